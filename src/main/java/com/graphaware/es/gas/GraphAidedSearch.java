@@ -16,29 +16,51 @@
  */
 package com.graphaware.es.gas;
 
+import com.graphaware.es.gas.cypher.CypherQueries;
 import com.graphaware.es.gas.wrap.ActionListenerWrapper;
+import com.graphaware.es.gas.warmup.SearchWarmer;
 import com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper;
+import com.graphaware.es.gas.wrap.IndexInfos;
+import com.graphaware.es.gas.wrap.ResponseCache;
 import org.elasticsearch.action.support.ActionFilter;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.PathUtils;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.nio.file.Path;
+
 public class GraphAidedSearch extends AbstractLifecycleComponent<GraphAidedSearch> {
 
+    public static final String WARMUP_PATH = "gas.warmup.path";
+    public static final String WARMUP_SAVE_INTERVAL = "gas.warmup.save_interval";
+
     private final ActionListenerWrapper<?> wrapper;
     private final ActionFilters filters;
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final IndexInfos indexInfos;
+    private final SearchWarmer warmer;
+    private ThreadPool.Cancellable warmerSave;
 
     @Inject
-    public GraphAidedSearch(final Settings settings, final Client client, final ClusterService clusterService, final ScriptService scriptService, final ThreadPool threadPool, final ActionFilters filters) {
+    public GraphAidedSearch(final Settings settings, final Client client, final ClusterService clusterService, final ScriptService scriptService, final ThreadPool threadPool, final ActionFilters filters, final IndexNameExpressionResolver indexNameExpressionResolver, final Environment environment, final ResponseCache responseCache) {
         super(settings);
 
         this.filters = filters;
-        this.wrapper = new GraphAidedSearchActionListenerWrapper(settings, clusterService, client);
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.indexInfos = new IndexInfos();
+        this.warmer = settings.getAsBoolean(SearchWarmer.WARMUP_ENABLED, false) ? new SearchWarmer(settings, client, warmupPath(settings, environment)) : null;
+        this.wrapper = new GraphAidedSearchActionListenerWrapper(settings, clusterService, client, threadPool, indexNameExpressionResolver, indexInfos, warmer, responseCache);
 
         initializeFilters();
     }
@@ -54,14 +76,39 @@ public class GraphAidedSearch extends AbstractLifecycleComponent<GraphAidedSearc
         }
     }
 
+    private static Path warmupPath(Settings settings, Environment environment) {
+        String path = settings.get(WARMUP_PATH);
+        return path != null ? PathUtils.get(path) : environment.dataFiles()[0].resolve("gas").resolve("warmup");
+    }
+
     @Override
     protected void doStart() {
-
+        indexInfos.update(clusterService.state().getMetaData());
+        clusterService.add(indexInfos);
+        CypherQueries.configure(settings, threadPool.generic());
+        if (warmer == null) {
+            return;
+        }
+        warmer.load();
+        clusterService.add(warmer);
+        warmerSave = threadPool.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                warmer.save();
+            }
+        }, settings.getAsTime(WARMUP_SAVE_INTERVAL, TimeValue.timeValueMinutes(5)), ThreadPool.Names.GENERIC);
     }
 
     @Override
     protected void doStop() {
-
+        clusterService.remove(indexInfos);
+        CypherQueries.clear();
+        if (warmer == null) {
+            return;
+        }
+        clusterService.remove(warmer);
+        warmerSave.cancel();
+        warmer.save();
     }
 
     @Override
@@ -20,8 +20,14 @@ import com.graphaware.es.gas.wrap.CannotWrapException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.ClearScrollAction;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchAction;
+import org.elasticsearch.action.search.MultiSearchRequest;
 import org.elasticsearch.action.search.SearchAction;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollAction;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.support.ActionFilter;
 import org.elasticsearch.action.support.ActionFilterChain;
 import org.elasticsearch.common.component.AbstractComponent;
@@ -29,8 +35,11 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.tasks.Task;
 
+import java.util.concurrent.Executor;
+
 public class GraphAidedSearchFilter extends AbstractComponent implements ActionFilter {
 
     private static final int DEFAULT_FILTER_ORDER = 10;
@@ -61,12 +70,63 @@ public class GraphAidedSearchFilter extends AbstractComponent implements ActionF
 
     @Override
     public void apply(Task task, String action, ActionRequest request, ActionListener listener, ActionFilterChain chain) {
+        Executor executor = null;
+        if (SearchAction.INSTANCE.name().equals(action)) {
+            if (wrapper.answer((SearchRequest) request, listener)) {
+                return;
+            }
+            executor = wrapper.forkExecutor((SearchRequest) request);
+        } else if (MultiSearchAction.INSTANCE.name().equals(action)) {
+            executor = wrapper.forkExecutor((MultiSearchRequest) request);
+        }
+
+        if (executor != null) {
+            //wrapping calls Neo4j, which must not block the transport thread
+            fork(executor, task, action, request, listener, chain);
+            return;
+        }
+        proceed(task, action, request, listener, chain);
+    }
+
+    private void fork(Executor executor, final Task task, final String action, final ActionRequest request, final ActionListener listener, final ActionFilterChain chain) {
+        executor.execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() {
+                proceed(task, action, request, listener, chain);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                listener.onFailure(t);
+            }
+        });
+    }
+
+    private void proceed(Task task, String action, ActionRequest request, ActionListener listener, ActionFilterChain chain) {
         if (SearchAction.INSTANCE.name().equals(action)) {
             try {
                 listener = wrapper.wrap((SearchRequest) request, listener);
             } catch (CannotWrapException e) {
                 //that's OK, will use the original unwrapped one and perform no Graph-Aided Search
             }
+        } else if (SearchScrollAction.INSTANCE.name().equals(action)) {
+            try {
+                listener = wrapper.wrap((SearchScrollRequest) request, listener);
+            } catch (CannotWrapException e) {
+                //not a Graph-Aided scroll
+            } catch (RuntimeException e) {
+                //a Graph-Aided scroll must not go on with unmodified hits
+                listener.onFailure(e);
+                return;
+            }
+        } else if (ClearScrollAction.INSTANCE.name().equals(action)) {
+            wrapper.clear((ClearScrollRequest) request);
+        } else if (MultiSearchAction.INSTANCE.name().equals(action)) {
+            try {
+                listener = wrapper.wrap((MultiSearchRequest) request, listener);
+            } catch (CannotWrapException e) {
+                //no sub-search to be Graph-Aided
+            }
         }
 
         chain.proceed(task, action, request, listener);
@@ -15,12 +15,18 @@
  */
 package com.graphaware.es.gas;
 
+import com.graphaware.es.gas.materialized.MaterializedBoosterService;
+import com.graphaware.es.gas.materialized.MaterializedFilterService;
+import com.graphaware.es.gas.wrap.ResponseCache;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class GraphAidedSearchModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        bind(ResponseCache.class).asEagerSingleton();
         bind(GraphAidedSearch.class).asEagerSingleton();
+        bind(MaterializedBoosterService.class).asEagerSingleton();
+        bind(MaterializedFilterService.class).asEagerSingleton();
     }
 }
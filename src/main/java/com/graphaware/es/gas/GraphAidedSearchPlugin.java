@@ -15,12 +15,24 @@
  */
 package com.graphaware.es.gas;
 
+import com.graphaware.es.gas.materialized.MaterializedBoosterService;
+import com.graphaware.es.gas.materialized.MaterializedFilterService;
+import com.graphaware.es.gas.query.GraphFilterQueryParser;
+import com.graphaware.es.gas.query.GraphScoreFunctionParser;
+import com.graphaware.es.gas.rest.RestResponseCacheAction;
+import com.graphaware.es.gas.rescore.GraphScoreScriptFactory;
 import org.elasticsearch.action.ActionModule;
 import org.elasticsearch.cluster.ClusterModule;
 import org.elasticsearch.cluster.settings.Validator;
+import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.inject.Module;
+import org.elasticsearch.indices.IndicesModule;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestModule;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.search.SearchModule;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -47,6 +59,23 @@ public class GraphAidedSearchPlugin extends Plugin {
         module.registerIndexDynamicSetting(INDEX_GA_ES_NEO4J_HOST, Validator.EMPTY);
         module.registerIndexDynamicSetting(INDEX_GA_ES_NEO4J_USER, Validator.EMPTY);
         module.registerIndexDynamicSetting(INDEX_GA_ES_NEO4J_PWD, Validator.EMPTY);
+        module.registerIndexDynamicSetting(INDEX_GA_ES_TWO_PHASE_FETCH, Validator.BOOLEAN);
+    }
+
+    public void onModule(final IndicesModule module) {
+        module.registerQueryParser(GraphFilterQueryParser.class);
+    }
+
+    public void onModule(final RestModule module) {
+        module.addRestAction(RestResponseCacheAction.class);
+    }
+
+    public void onModule(final ScriptModule module) {
+        module.registerScript(GraphScoreScriptFactory.NAME, GraphScoreScriptFactory.class);
+    }
+
+    public void onModule(final SearchModule module) {
+        module.registerFunctionScoreParser(GraphScoreFunctionParser.class);
     }
 
     @Override
@@ -54,4 +83,9 @@ public class GraphAidedSearchPlugin extends Plugin {
         return Collections.<Module>singleton(new GraphAidedSearchModule());
     }
 
+    @Override
+    public Collection<Class<? extends LifecycleComponent>> nodeServices() {
+        return Arrays.<Class<? extends LifecycleComponent>>asList(GraphAidedSearch.class, MaterializedBoosterService.class, MaterializedFilterService.class);
+    }
+
 }
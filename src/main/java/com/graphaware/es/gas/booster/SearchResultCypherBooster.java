@@ -18,25 +18,32 @@ package com.graphaware.es.gas.booster;
 import com.graphaware.es.gas.annotation.SearchBooster;
 import com.graphaware.es.gas.cypher.CypherEndPoint;
 import com.graphaware.es.gas.cypher.CypherEndPointBuilder;
+import com.graphaware.es.gas.cypher.CypherQueries;
 import com.graphaware.es.gas.cypher.CypherResult;
 import com.graphaware.es.gas.cypher.ResultRow;
 import com.graphaware.es.gas.domain.ExternalResult;
 import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.modifier.BatchedSearchResultModifier;
+import com.graphaware.es.gas.modifier.ReusableSearchResultModifier;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
 import com.graphaware.es.gas.util.NumberUtil;
 import com.graphaware.es.gas.util.UrlUtil;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.util.ParamUtil.extractMap;
 import static com.graphaware.es.gas.util.ParamUtil.extractParameter;
+import static com.graphaware.es.gas.util.ParamUtil.toKey;
 
 @SearchBooster(name = "SearchResultCypherBooster")
-public class SearchResultCypherBooster extends SearchResultExternalBooster {
+public class SearchResultCypherBooster extends SearchResultExternalBooster implements BatchedSearchResultModifier<Map<String, ExternalResult>>, ReusableSearchResultModifier, Cloneable {
 
     private final ESLogger logger;
     private CypherEndPoint cypherEndPoint;
@@ -44,6 +51,9 @@ public class SearchResultCypherBooster extends SearchResultExternalBooster {
     private String cypherQuery;
     private String scoreResultName;
     private String idResultName;
+    private String protocol;
+    private HashMap<String, Object> params = new HashMap<>();
+    private Map<String, ExternalResult> fetched;
 
     public SearchResultCypherBooster(Settings settings, IndexInfo indexInfo) {
         super(settings, indexInfo);
@@ -55,18 +65,80 @@ public class SearchResultCypherBooster extends SearchResultExternalBooster {
         cypherQuery = extractParameter(QUERY, extParams);
         scoreResultName = extractParameter(SCORE_NAME, extParams, DEFAULT_SCORE_RESULT_NAME);
         idResultName = extractParameter(IDENTIFIER, extParams, DEFAULT_ID_RESULT_NAME);
-        String protocol = extParams.containsKey(PROTOCOL) ? String.valueOf(extParams.get(PROTOCOL)) : DEFAULT_PROTOCOL;
+        protocol = extParams.containsKey(PROTOCOL) ? String.valueOf(extParams.get(PROTOCOL)) : DEFAULT_PROTOCOL;
+        params = extractMap(PARAMS, extParams);
+        if (params.containsKey(IDS)) {
+            throw new IllegalArgumentException("The " + IDS + " Cypher parameter is reserved for the ids of the hits");
+        }
         cypherEndPoint = createCypherEndPoint(protocol, getSettings());
     }
 
+    @Override
+    public SearchResultModifier copy() {
+        try {
+            SearchResultCypherBooster copy = (SearchResultCypherBooster) clone();
+            copy.params = new HashMap<>(params);
+            copy.fetched = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     protected Map<String, ExternalResult> externalDoReorder(Set<String> keySet) {
+        if (fetched != null) {
+            //the lookup was made for these hits only, a later scroll page needs its own
+            Map<String, ExternalResult> result = fetched;
+            fetched = null;
+            return result;
+        }
         logger.debug("Query cypher for: " + keySet);
         return getExternalResults(keySet);
     }
 
+    @Override
+    public String getBatchKey() {
+        //the scores of an id don't depend on how the hits are looked up, a threshold booster shares the key
+        String host = cypherEndPoint != null ? cypherEndPoint.getNeo4jHost() : null;
+        String username = cypherEndPoint != null ? cypherEndPoint.getNeo4jUsername() : null;
+        return Arrays.asList(getClass().getName(), protocol, host, username, cypherQuery, toKey(params), getIdResultName(), getScoreResultName()).toString();
+    }
+
+    @Override
+    public boolean isBatchable() {
+        //a threshold lookup is made chunk by chunk
+        return cypherEndPoint != null && !isThreshold();
+    }
+
+    @Override
+    public Map<String, ExternalResult> fetch(Set<String> ids) {
+        return getExternalResults(ids);
+    }
+
+    @Override
+    public void setFetched(Map<String, ExternalResult> result) {
+        this.fetched = result;
+    }
+
+    @Override
+    public boolean isFetched() {
+        return fetched != null;
+    }
+
     protected Map<String, ExternalResult> getExternalResults(Set<String> keySet) {
-        CypherResult externalResult = cypherEndPoint.executeCypher(cypherQuery, getParameters(keySet));
+        return getExternalResults(CypherQueries.execute(cypherEndPoint, cypherQuery, getParameters(keySet)));
+    }
+
+    /**
+     * @return the scores of all the documents returned by the query, which is run without the <code>ids</code>
+     * parameter.
+     */
+    public Map<String, ExternalResult> fetchAll() {
+        return getExternalResults(CypherQueries.execute(cypherEndPoint, cypherQuery, new HashMap<>(params)));
+    }
+
+    private Map<String, ExternalResult> getExternalResults(CypherResult externalResult) {
         Map<String, ExternalResult> results = new HashMap<>();
         for (ResultRow resultRow : externalResult.getRows()) {
             checkResultRow(resultRow);
@@ -77,8 +149,8 @@ public class SearchResultCypherBooster extends SearchResultExternalBooster {
     }
 
     public HashMap<String, Object> getParameters(Set<String> resultKeySet) {
-        HashMap<String, Object> parameters = new HashMap<>();
-        parameters.put("ids", resultKeySet);
+        HashMap<String, Object> parameters = new HashMap<>(params);
+        parameters.put(IDS, resultKeySet);
 
         return parameters;
     }
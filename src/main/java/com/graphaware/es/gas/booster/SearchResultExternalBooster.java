@@ -41,6 +41,8 @@ public abstract class SearchResultExternalBooster extends CypherSettingsReader i
 
     private int size;
     private int from;
+    private int probeSize;
+    private Float maxGraphScore;
 
     protected String composeScoreOperator;
 
@@ -57,6 +59,8 @@ public abstract class SearchResultExternalBooster extends CypherSettingsReader i
         if (extParams != null) {
             maxResultSize = NumberUtil.getInt(extParams.get(MAX_RESULT_SIZE), getMaxResultWindow());
             composeScoreOperator = extractParameter(OPERATOR, extParams, DEFAULT_SCORE_OPERATOR);
+            probeSize = NumberUtil.getInt(extParams.get(PROBE_SIZE), 0);
+            maxGraphScore = extParams.get(MAX_GRAPH_SCORE) != null ? NumberUtil.getFloat(extParams.get(MAX_GRAPH_SCORE)) : null;
             extendedParseRequest(extParams);
             validateOperator();
         }
@@ -68,6 +72,9 @@ public abstract class SearchResultExternalBooster extends CypherSettingsReader i
 
     @Override
     public InternalSearchHits modify(final InternalSearchHits hits) {
+        if (isThreshold()) {
+            return modifyTopHits(hits);
+        }
         final InternalSearchHit[] searchHits = hits.internalHits();
         Map<String, InternalSearchHit> hitMap = new HashMap<>();
         for (InternalSearchHit hit : searchHits) {
@@ -119,7 +126,86 @@ public abstract class SearchResultExternalBooster extends CypherSettingsReader i
                 maxScore);
     }
 
-    protected float composeScore(float esScore, float extScore) {
+    /**
+     * Scores the hits in chunks of {@link #probeSize}, in Elasticsearch score order, until no hit left can enter the
+     * page: the best score a hit left can reach is its own score composed with the maximum graph score.
+     */
+    private InternalSearchHits modifyTopHits(final InternalSearchHits hits) {
+        Map<String, InternalSearchHit> hitMap = new HashMap<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            hitMap.put(hit.getId(), hit);
+        }
+        List<InternalSearchHit> ordered = new ArrayList<>(hitMap.values());
+        Collections.sort(ordered, new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o2.score(), o1.score());
+            }
+        });
+
+        final int topSize = from + size;
+        PriorityQueue<InternalSearchHit> top = new PriorityQueue<>(Math.max(1, topSize + 1), new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o1.score(), o2.score());
+            }
+        });
+        int scored = 0;
+        while (scored < ordered.size() && topSize > 0
+                && (top.size() < topSize || top.peek().score() < maxReachableScore(ordered.get(scored).score()))) {
+            int end = Math.min(ordered.size(), scored + probeSize);
+            Set<String> ids = new LinkedHashSet<>();
+            for (int i = scored; i < end; i++) {
+                ids.add(ordered.get(i).getId());
+            }
+            Map<String, ExternalResult> remoteScore = externalDoReorder(ids);
+            for (int i = scored; i < end; i++) {
+                InternalSearchHit hit = ordered.get(i);
+                ExternalResult remoteResult = remoteScore.get(hit.getId());
+                if (remoteResult != null) {
+                    hit.score(composeScore(hit.score(), remoteResult.getScore()));
+                }
+                top.add(hit);
+                if (top.size() > topSize) {
+                    top.poll();
+                }
+            }
+            scored = end;
+        }
+
+        List<InternalSearchHit> page = new ArrayList<>(top);
+        Collections.sort(page, new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o2.score(), o1.score());
+            }
+        });
+        if (from >= page.size()) {
+            return new InternalSearchHits(new InternalSearchHit[0], hitMap.size(), 0);
+        }
+        List<InternalSearchHit> pageHits = page.subList(from, page.size());
+        return new InternalSearchHits(pageHits.toArray(new InternalSearchHit[pageHits.size()]), hitMap.size(), page.get(0).score());
+    }
+
+    private float maxReachableScore(float esScore) {
+        if (esScore < 0) {
+            //a negative score multiplied by a lower graph score can be higher
+            return Float.POSITIVE_INFINITY;
+        }
+        //hits without a graph score keep their own
+        return Math.max(esScore, composeScore(esScore, maxGraphScore));
+    }
+
+    /**
+     * @return whether the hits are scored in chunks until the page can't change, which needs a maximum graph score and
+     * an operator that doesn't decrease with the Elasticsearch score.
+     */
+    public boolean isThreshold() {
+        return probeSize > 0 && maxGraphScore != null
+                && (MULTIPLY.equals(getComposeScoreOperator()) || PLUS.equals(getComposeScoreOperator()));
+    }
+
+    public float composeScore(float esScore, float extScore) {
         switch (getComposeScoreOperator()) {
             case MULTIPLY:
                 return esScore * extScore;
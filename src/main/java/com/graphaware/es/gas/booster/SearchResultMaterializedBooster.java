@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.booster;
+
+import com.graphaware.es.gas.annotation.SearchBooster;
+import com.graphaware.es.gas.domain.ExternalResult;
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.materialized.GraphScoreFile;
+import com.graphaware.es.gas.materialized.MaterializedScores;
+import com.graphaware.es.gas.modifier.ReusableSearchResultModifier;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.util.ParamUtil.extractParameter;
+
+@SearchBooster(name = "SearchResultMaterializedBooster")
+public class SearchResultMaterializedBooster extends SearchResultExternalBooster implements ReusableSearchResultModifier, Cloneable {
+
+    private final ESLogger logger;
+    private String materialization;
+
+    public SearchResultMaterializedBooster(Settings settings, IndexInfo indexInfo) {
+        super(settings, indexInfo);
+        this.logger = Loggers.getLogger(IndexInfo.INDEX_LOGGER_NAME, settings);
+    }
+
+    @Override
+    protected void extendedParseRequest(Map<String, String> extParams) {
+        materialization = extractParameter(MATERIALIZATION, extParams);
+    }
+
+    @Override
+    public SearchResultModifier copy() {
+        try {
+            return (SearchResultModifier) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected Map<String, ExternalResult> externalDoReorder(Set<String> keySet) {
+        Map<String, ExternalResult> results = new HashMap<>();
+        GraphScoreFile scores = MaterializedScores.get(materialization);
+        if (scores == null) {
+            logger.warn("Materialized scores {} are not available, results are not boosted", materialization);
+            return results;
+        }
+
+        for (String id : keySet) {
+            Float score = scores.get(id);
+            if (score != null) {
+                results.put(id, new ExternalResult(id, score));
+            }
+        }
+        return results;
+    }
+}
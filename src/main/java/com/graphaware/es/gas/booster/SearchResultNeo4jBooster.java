@@ -18,6 +18,8 @@ package com.graphaware.es.gas.booster;
 import com.graphaware.es.gas.annotation.SearchBooster;
 import com.graphaware.es.gas.domain.ExternalResult;
 import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.modifier.ReusableSearchResultModifier;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
 import com.graphaware.es.gas.util.UrlUtil;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
@@ -45,7 +47,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import static com.graphaware.es.gas.domain.ClauseConstants.*;
 
 @SearchBooster(name = "SearchResultNeo4jBooster")
-public class SearchResultNeo4jBooster extends SearchResultExternalBooster {
+public class SearchResultNeo4jBooster extends SearchResultExternalBooster implements ReusableSearchResultModifier, Cloneable {
 
     private static final String DEFAULT_KEY_PROPERTY = "uuid";
     private static final String DEFAULT_REST_ENDPOINT = "/graphaware/recommendation/filter";
@@ -109,6 +111,15 @@ public class SearchResultNeo4jBooster extends SearchResultExternalBooster {
         return externalResults;
     }
 
+    @Override
+    public SearchResultModifier copy() {
+        try {
+            return (SearchResultModifier) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void setHeader(WebResource.Builder resBuilder) {
       Map<String, String> headers = new HashMap<>();
       if (null != getNeo4jPassword()) {
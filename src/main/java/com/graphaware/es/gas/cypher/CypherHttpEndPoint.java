@@ -42,14 +42,12 @@ public class CypherHttpEndPoint extends CypherEndPoint {
     private static final String CYPHER_RESPONSE_ROW_FIELD = "row";
 
     private final ClientConfig cfg;
-    private final StringBuilder stringBuilder;
     private final ObjectMapper mapper;
 
     public CypherHttpEndPoint(Settings settings, String neo4jUrl, String neo4jUsername, String neo4jPassword) {
         super(settings, neo4jUrl, neo4jUsername, neo4jPassword);
         cfg = new DefaultClientConfig();
         cfg.getClasses().add(JacksonJsonProvider.class);
-        stringBuilder = new StringBuilder();
         mapper = new ObjectMapper();
     }
 
@@ -100,6 +98,7 @@ public class CypherHttpEndPoint extends CypherEndPoint {
 
     public String buildCypherQuery(String cypherQuery, Map<String, Object> parameters) {
         try {
+            StringBuilder stringBuilder = new StringBuilder();
             stringBuilder.append("{\"statements\" : [");
             stringBuilder.append("{\"statement\" : \"").append(cypherQuery).append("\"");
             if (parameters.size() > 0) {
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.cypher;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Per-node registry of the Neo4j servers the boosters and filters talk to and of the distinct query shapes they send.
+ * A new shape is planned with EXPLAIN on every other known server, and a newly connected server with every known
+ * shape, so that plan compilation stays off the search path.
+ */
+public final class CypherQueries {
+
+    public static final String AUTO_PARAMETERIZE = "gas.cypher.auto_parameterize";
+    public static final String PLAN_WARMING = "gas.cypher.plan_warming";
+    public static final String SHAPES_SIZE = "gas.cypher.shapes.size";
+
+    private static final int DEFAULT_SHAPES_SIZE = 100;
+    private static final String EXPLAIN = "EXPLAIN ";
+
+    private static final ESLogger logger = Loggers.getLogger(CypherQueries.class);
+
+    private static final ConcurrentMap<String, CypherEndPoint> endPoints = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, HashMap<String, Object>> shapes = new ConcurrentHashMap<>();
+    private static final Set<String> inlined = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static volatile boolean autoParameterize = false;
+    private static volatile int maxShapes = DEFAULT_SHAPES_SIZE;
+    private static volatile Executor executor;
+
+    private CypherQueries() {
+    }
+
+    public static void configure(Settings settings, Executor executor) {
+        autoParameterize = settings.getAsBoolean(AUTO_PARAMETERIZE, false);
+        maxShapes = settings.getAsInt(SHAPES_SIZE, DEFAULT_SHAPES_SIZE);
+        CypherQueries.executor = settings.getAsBoolean(PLAN_WARMING, true) ? executor : null;
+    }
+
+    public static void clear() {
+        executor = null;
+        endPoints.clear();
+        shapes.clear();
+        inlined.clear();
+    }
+
+    public static CypherResult execute(CypherEndPoint endPoint, String query, HashMap<String, Object> parameters) {
+        CypherStatement statement = autoParameterize ? CypherStatement.parameterize(query, parameters) : CypherStatement.of(query, parameters);
+        record(endPoint, statement);
+        return endPoint.executeCypher(statement.getQuery(), statement.getParameters());
+    }
+
+    public static void connected(CypherEndPoint endPoint) {
+        if (endPoints.putIfAbsent(key(endPoint), endPoint) == null) {
+            warm(endPoint, new HashMap<>(shapes));
+        }
+    }
+
+    public static Set<String> getShapes() {
+        return Collections.unmodifiableSet(shapes.keySet());
+    }
+
+    private static void record(CypherEndPoint endPoint, CypherStatement statement) {
+        connected(endPoint);
+        String query = statement.getQuery();
+        if (shapes.containsKey(query)) {
+            return;
+        }
+        if (!autoParameterize && statement.getLiterals() > 0) {
+            //every variation of the literals is planned again, there is no shape to warm
+            if (inlined.size() < maxShapes && inlined.add(query)) {
+                logger.warn("Cypher query inlines {} literal(s), pass them as parameters or enable {}: {}", statement.getLiterals(), AUTO_PARAMETERIZE, query);
+            }
+            return;
+        }
+        HashMap<String, Object> sample = new HashMap<>(statement.getParameters());
+        if (shapes.size() >= maxShapes || shapes.putIfAbsent(query, sample) != null) {
+            return;
+        }
+        String key = key(endPoint);
+        for (Map.Entry<String, CypherEndPoint> entry : endPoints.entrySet()) {
+            if (!entry.getKey().equals(key)) {
+                warm(entry.getValue(), Collections.singletonMap(query, sample));
+            }
+        }
+    }
+
+    private static void warm(final CypherEndPoint endPoint, final Map<String, HashMap<String, Object>> queries) {
+        Executor current = executor;
+        if (current == null || queries.isEmpty()) {
+            return;
+        }
+        current.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, HashMap<String, Object>> query : queries.entrySet()) {
+                    try {
+                        endPoint.executeCypher(EXPLAIN + query.getKey(), query.getValue());
+                    } catch (RuntimeException e) {
+                        logger.debug("Unable to warm the plan of {} on {}", e, query.getKey(), endPoint.getNeo4jHost());
+                    }
+                }
+            }
+        });
+    }
+
+    private static String key(CypherEndPoint endPoint) {
+        return Arrays.asList(endPoint.getClass().getName(), endPoint.getNeo4jHost(), endPoint.getNeo4jUsername()).toString();
+    }
+}
@@ -38,7 +38,7 @@ public class CypherSettingsReader {
     }
     
     protected CypherEndPoint createCypherEndPoint(String protocol, Settings settings) {
-        return new CypherEndPointBuilder(protocol)
+        CypherEndPoint endPoint = new CypherEndPointBuilder(protocol)
                 .settings(settings)
                 .neo4jHostname(getNeo4jHost())
                 .neo4jBoltHostname(getNeo4jBoltHost())
@@ -46,6 +46,8 @@ public class CypherSettingsReader {
                 .password(getNeo4jPassword())
                 .encryption(isSecureBolt())
                 .build();
+        CypherQueries.connected(endPoint);
+        return endPoint;
     }
 
     public String getNeo4jHost() {
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.cypher;
+
+import java.util.HashMap;
+
+/**
+ * A Cypher query whose inline string and number literals have been counted and, when asked, moved into parameters,
+ * so that queries differing only in their literals share the same text and therefore the same Neo4j plan.
+ */
+public final class CypherStatement {
+
+    static final String LITERAL_PARAMETER_PREFIX = "gas_literal_";
+
+    private final String query;
+    private final HashMap<String, Object> parameters;
+    private final int literals;
+
+    private CypherStatement(String query, HashMap<String, Object> parameters, int literals) {
+        this.query = query;
+        this.parameters = parameters;
+        this.literals = literals;
+    }
+
+    public static CypherStatement of(String query, HashMap<String, Object> parameters) {
+        return scan(query, parameters, false);
+    }
+
+    public static CypherStatement parameterize(String query, HashMap<String, Object> parameters) {
+        return scan(query, parameters, true);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public HashMap<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return number of literals found inline in the original query.
+     */
+    public int getLiterals() {
+        return literals;
+    }
+
+    private static CypherStatement scan(String query, HashMap<String, Object> parameters, boolean extract) {
+        StringBuilder result = new StringBuilder(query.length());
+        HashMap<String, Object> extracted = extract ? new HashMap<>(parameters) : parameters;
+        int literals = 0;
+        int extractedLiterals = 0;
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i);
+            int end;
+            Object value;
+            if (c == '`') {
+                end = skipQuoted(query, i, '`');
+                value = null;
+            } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '/') {
+                end = query.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                value = null;
+            } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                end = query.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                value = null;
+            } else if (c == '\'' || c == '"') {
+                end = skipQuoted(query, i, c);
+                String text = query.substring(i + 1, Math.max(i + 1, end - 1));
+                //escape sequences are left to Cypher
+                value = end <= length && text.indexOf('\\') < 0 ? text : null;
+                literals++;
+            } else if (Character.isDigit(c) && isNumberStart(query, i)) {
+                end = skipNumber(query, i);
+                if (end < length && Character.isJavaIdentifierPart(query.charAt(end))) {
+                    //hexadecimal and exponent notations are kept as written
+                    end = skipIdentifier(query, end);
+                    value = null;
+                } else {
+                    value = isRangeBound(query, i, end) ? null : number(query.substring(i, end));
+                    literals += value != null ? 1 : 0;
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                //identifiers and $parameters, which may contain digits
+                end = skipIdentifier(query, i);
+                value = null;
+            } else {
+                end = i + 1;
+                value = null;
+            }
+            end = Math.min(end, length);
+            if (extract && value != null) {
+                String name = LITERAL_PARAMETER_PREFIX + extractedLiterals++;
+                while (extracted.containsKey(name)) {
+                    name = name + "_";
+                }
+                extracted.put(name, value);
+                result.append('{').append(name).append('}');
+            } else {
+                result.append(query, i, end);
+            }
+            i = end;
+        }
+        return new CypherStatement(extract ? result.toString() : query, extracted, literals);
+    }
+
+    private static int skipQuoted(String query, int start, char quote) {
+        int i = start + 1;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            i++;
+        }
+        return query.length() + 1;
+    }
+
+    private static boolean isNumberStart(String query, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char previous = query.charAt(i - 1);
+        return !Character.isJavaIdentifierPart(previous) && previous != '.';
+    }
+
+    private static int skipNumber(String query, int start) {
+        int i = start;
+        boolean dot = false;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '.' && !dot && i + 1 < query.length() && Character.isDigit(query.charAt(i + 1))) {
+                dot = true;
+            } else if (!Character.isDigit(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipIdentifier(String query, int start) {
+        int i = start + 1;
+        while (i < query.length() && Character.isJavaIdentifierPart(query.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isRangeBound(String query, int start, int end) {
+        //variable length relationships such as [:KNOWS*1..3] do not accept parameters
+        int previous = start - 1;
+        while (previous >= 0 && Character.isWhitespace(query.charAt(previous))) {
+            previous--;
+        }
+        return (previous >= 0 && query.charAt(previous) == '*') || query.startsWith("..", end);
+    }
+
+    private static Object number(String text) {
+        try {
+            return text.indexOf('.') >= 0 ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -45,6 +45,35 @@ public final class ClauseConstants {
     public static final String TRUE = "true";
     public static final String QUERY_BINARY = "query_binary";
     public static final String NAME = "name";
+
+    public static final String SOURCE = "_source";
+    public static final String FIELDS = "fields";
+    public static final String FIELDDATA_FIELDS = "fielddata_fields";
+    public static final String SCRIPT_FIELDS = "script_fields";
+    public static final String HIGHLIGHT = "highlight";
+    public static final String BOOL = "bool";
+    public static final String MUST = "must";
+    public static final String MUST_NOT = "must_not";
+    public static final String FILTER = "filter";
+    public static final String MATCH_ALL = "match_all";
+    public static final String VALUES = "values";
+    public static final String TERMS = "terms";
+    public static final String INDEX_FIELD = "_index";
+
+    public static final String ENGINE = "engine";
+    public static final String SHARD_ENGINE = "shard";
+    public static final String WINDOW_SIZE = "windowSize";
+    public static final String RESCORE = "rescore";
+    public static final String MATERIALIZATION = "materialization";
+    public static final String PARAMS = "params";
+    public static final String PREFILTER = "prefilter";
+    public static final String BOOST = "boost";
+    public static final String AGGS = "aggs";
+    public static final String AGGREGATIONS = "aggregations";
+    public static final String SUGGEST = "suggest";
+    public static final String PROBE_SIZE = "probeSize";
+    public static final String EXACT_TOTAL = "exactTotal";
+    public static final String MAX_GRAPH_SCORE = "maxGraphScore";
     
     private ClauseConstants() {
         
@@ -15,6 +15,8 @@
  */
 package com.graphaware.es.gas.domain;
 
+import java.util.Objects;
+
 public class IndexInfo {
 
     public static final String INDEX_LOGGER_NAME = "index.graph-aided-search";
@@ -27,6 +29,7 @@ public class IndexInfo {
     private final boolean enabled;
     private final int maxResultWindow;
     private boolean secureBolt = true;
+    private boolean twoPhaseFetch = false;
 
     IndexInfo() {
         this.neo4jHost = "http://localhost:7474";
@@ -43,6 +46,12 @@ public class IndexInfo {
         this(hostname, boltHostname, username, password, enabled, maxResultWindow);
         this.secureBolt = secureBolt;
     }
+
+    public IndexInfo(final String hostname, final String boltHostname, final String username, final String password, boolean enabled, int maxResultWindow, boolean secureBolt, boolean twoPhaseFetch) {
+        this(hostname, boltHostname, username, password, enabled, maxResultWindow, secureBolt);
+        this.twoPhaseFetch = twoPhaseFetch;
+    }
+
     public IndexInfo(final String hostname, final String boltHostname, final String username, final String password, boolean enabled, int maxResultWindow) {
         this(hostname, boltHostname, enabled, maxResultWindow);
         this.neo4jUsername = username;
@@ -72,6 +81,30 @@ public class IndexInfo {
         return maxResultWindow;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        IndexInfo that = (IndexInfo) o;
+        return enabled == that.enabled
+                && maxResultWindow == that.maxResultWindow
+                && secureBolt == that.secureBolt
+                && twoPhaseFetch == that.twoPhaseFetch
+                && Objects.equals(neo4jHost, that.neo4jHost)
+                && Objects.equals(neo4jBoltHost, that.neo4jBoltHost)
+                && Objects.equals(neo4jUsername, that.neo4jUsername)
+                && Objects.equals(neo4jPwd, that.neo4jPwd);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(neo4jHost, neo4jBoltHost, neo4jUsername, neo4jPwd, enabled, maxResultWindow, secureBolt, twoPhaseFetch);
+    }
+
     @Override
     public String toString() {
         return "ScriptInfo [neo4jHost=" + neo4jHost
@@ -97,4 +130,8 @@ public class IndexInfo {
     public boolean isSecureBolt() {
         return secureBolt;
     }
+
+    public boolean isTwoPhaseFetch() {
+        return twoPhaseFetch;
+    }
 }
@@ -17,27 +17,38 @@ package com.graphaware.es.gas.filter;
 
 import com.graphaware.es.gas.annotation.SearchFilter;
 import com.graphaware.es.gas.cypher.CypherEndPoint;
+import com.graphaware.es.gas.cypher.CypherQueries;
 import com.graphaware.es.gas.cypher.CypherResult;
 import com.graphaware.es.gas.cypher.CypherSettingsReader;
 import com.graphaware.es.gas.cypher.ResultRow;
 import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.modifier.BatchedSearchResultModifier;
+import com.graphaware.es.gas.modifier.ReusableSearchResultModifier;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
 import com.graphaware.es.gas.util.NumberUtil;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.search.internal.InternalSearchHit;
 import org.elasticsearch.search.internal.InternalSearchHits;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.util.ParamUtil.extractMap;
+import static com.graphaware.es.gas.util.ParamUtil.toKey;
 import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
 
 @SearchFilter(name = "SearchResultCypherFilter")
-public class SearchResultCypherFilter extends CypherSettingsReader implements SearchResultFilter {
+public class SearchResultCypherFilter extends CypherSettingsReader implements SearchResultFilter, BatchedSearchResultModifier<Set<String>>, ReusableSearchResultModifier, Cloneable {
 
     private static final Logger logger = Logger.getLogger(SearchResultCypherFilter.class.getName());
 
@@ -54,7 +65,13 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
     private int from;
     private String cypherQuery;
     private boolean shouldExclude = true;
+    private boolean prefilter;
+    private int probeSize;
+    private boolean exactTotal;
     private String idResultName;
+    private Set<String> remoteFilter;
+    private String protocol;
+    private HashMap<String, Object> params = new HashMap<>();
 
     public SearchResultCypherFilter(Settings settings, IndexInfo indexSettings) {
         super(settings, indexSettings);
@@ -65,18 +82,31 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
         size = NumberUtil.getInt(sourceAsMap.get(SIZE), DEFAULT_RESULT_SIZE);
         from = NumberUtil.getInt(sourceAsMap.get(FROM), DEFAULT_FROM_VALUE);
 
-        HashMap extParams = (HashMap) sourceAsMap.get(GAS_FILTER_CLAUSE);
+        Map<String, Object> extParams = (Map<String, Object>) sourceAsMap.get(GAS_FILTER_CLAUSE);
         if (extParams != null) {
             cypherQuery = (String) extParams.get(QUERY);
             maxResultSize = NumberUtil.getInt(extParams.get(MAX_RESULT_SIZE), getMaxResultWindow());
             shouldExclude = extParams.containsKey(EXCLUDE) && String.valueOf(extParams.get(EXCLUDE)).equalsIgnoreCase(TRUE);
+            prefilter = extParams.containsKey(PREFILTER) && String.valueOf(extParams.get(PREFILTER)).equalsIgnoreCase(TRUE);
             idResultName = extParams.containsKey(ID_RESULT_NAME_KEY) ? String.valueOf(extParams.get(ID_RESULT_NAME_KEY)) : null;
-            String protocol = extParams.containsKey(PROTOCOL) ? String.valueOf(extParams.get(PROTOCOL)) : DEFAULT_PROTOCOL;
+            protocol = extParams.containsKey(PROTOCOL) ? String.valueOf(extParams.get(PROTOCOL)) : DEFAULT_PROTOCOL;
+            params = extractMap(PARAMS, extParams);
+            probeSize = NumberUtil.getInt(extParams.get(PROBE_SIZE), 0);
+            exactTotal = extParams.containsKey(EXACT_TOTAL) && String.valueOf(extParams.get(EXACT_TOTAL)).equalsIgnoreCase(TRUE);
+            if (probeSize > 0 && params.containsKey(IDS)) {
+                throw new IllegalArgumentException("The " + IDS + " Cypher parameter is reserved for the ids of the probed hits");
+            }
             cypherEndPoint = createCypherEndPoint(protocol, getSettings());
         }
         if (maxResultSize > 0) {
+            //the filter pages the window itself
             sourceAsMap.put(SIZE, maxResultSize);
+            sourceAsMap.put(FROM, 0);
         }
+        validateRequest();
+    }
+
+    protected void validateRequest() {
         if (null == cypherQuery) {
             throw new RuntimeException("The Query Parameter is required in gas-filter");
         }
@@ -84,7 +114,10 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
 
     @Override
     public InternalSearchHits modify(final InternalSearchHits hits) {
-        Set<String> remoteFilter = getFilteredItems();
+        if (isProbe()) {
+            return probe(hits);
+        }
+        Set<String> remoteFilter = getRemoteFilter();
         final InternalSearchHit[] searchHits = hits.internalHits();
         Map<String, InternalSearchHit> hitMap = new HashMap<>();
         for (InternalSearchHit hit : searchHits) {
@@ -112,7 +145,7 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
         final int arraySize = (size + from) < k ? size
                 : (k - from) > 0 ? (k - from) : 0;
         if (arraySize == 0) {
-            return new InternalSearchHits(new InternalSearchHit[0], 0, 0);
+            return new InternalSearchHits(new InternalSearchHit[0], totalSize, 0);
         }
 
         InternalSearchHit[] newSearchHits = new InternalSearchHit[arraySize];
@@ -128,8 +161,106 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
                 hits.maxScore());
     }
 
+    /**
+     * Looks the hits up in chunks of {@link #probeSize} ids, in score order, until the page is filled. The hits which
+     * are not looked up are counted in the total.
+     */
+    private InternalSearchHits probe(final InternalSearchHits hits) {
+        InternalSearchHit[] ordered = hits.internalHits().clone();
+        Arrays.sort(ordered, new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o2.score(), o1.score());
+            }
+        });
+
+        List<InternalSearchHit> kept = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int probed = 0;
+        while (probed < ordered.length && (exactTotal || kept.size() < from + size)) {
+            int end = Math.min(ordered.length, probed + probeSize);
+            Set<String> ids = new LinkedHashSet<>();
+            for (int i = probed; i < end; i++) {
+                ids.add(ordered[i].getId());
+            }
+            Set<String> matched = getProbedItems(ids);
+            for (int i = probed; i < end; i++) {
+                if (seen.add(ordered[i].getId()) && shouldExclude != matched.contains(ordered[i].getId())) {
+                    kept.add(ordered[i]);
+                }
+            }
+            probed = end;
+        }
+        logger.log(Level.FINE, "Probed {0} of {1} hits", new Object[]{probed, ordered.length});
+
+        long totalSize = kept.size() + ordered.length - probed;
+        if (from >= kept.size()) {
+            return new InternalSearchHits(new InternalSearchHit[0], totalSize, 0);
+        }
+        List<InternalSearchHit> page = kept.subList(from, Math.min(kept.size(), from + size));
+        return new InternalSearchHits(page.toArray(new InternalSearchHit[page.size()]), totalSize, hits.maxScore());
+    }
+
+    @Override
+    public SearchResultModifier copy() {
+        try {
+            return (SearchResultModifier) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Set<String> getRemoteFilter() {
+        //computed once per request, or once per scroll for scrolled searches
+        if (remoteFilter == null) {
+            remoteFilter = getFilteredItems();
+        }
+        return remoteFilter;
+    }
+
+    @Override
+    public String getBatchKey() {
+        String host = cypherEndPoint != null ? cypherEndPoint.getNeo4jHost() : null;
+        String username = cypherEndPoint != null ? cypherEndPoint.getNeo4jUsername() : null;
+        return Arrays.asList(getClass().getName(), protocol, host, username, cypherQuery, toKey(params), getIdResultName(), probeSize).toString();
+    }
+
+    @Override
+    public boolean isBatchable() {
+        //a probe is looked up chunk by chunk with the ids of the hits
+        return cypherEndPoint != null && !isProbe();
+    }
+
+    @Override
+    public Set<String> fetch(Set<String> ids) {
+        //the filter set does not depend on the hits
+        return getFilteredItems();
+    }
+
+    @Override
+    public void setFetched(Set<String> result) {
+        this.remoteFilter = result;
+    }
+
+    @Override
+    public boolean isFetched() {
+        return remoteFilter != null;
+    }
+
     protected Set<String> getFilteredItems() {
-        CypherResult result = getCypherResult();
+        return getItems(getCypherResult());
+    }
+
+    /**
+     * @return the ids, among the given ones, returned by the query.
+     */
+    protected Set<String> getProbedItems(Set<String> ids) {
+        HashMap<String, Object> parameters = new HashMap<>(params);
+        parameters.put(IDS, ids);
+        return getItems(CypherQueries.execute(cypherEndPoint, cypherQuery, parameters));
+    }
+
+    private Set<String> getItems(CypherResult result) {
         Set<String> filteredItems = new HashSet<>();
 
         for (ResultRow resultRow : result.getRows()) {
@@ -140,7 +271,7 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
     }
 
     protected CypherResult getCypherResult() {
-        return cypherEndPoint.executeCypher(cypherQuery, new HashMap<String, Object>());
+        return CypherQueries.execute(cypherEndPoint, cypherQuery, new HashMap<>(params));
     }
 
     protected String getFilteredItem(ResultRow resultRow) {
@@ -159,10 +290,47 @@ public class SearchResultCypherFilter extends CypherSettingsReader implements Se
         return from;
     }
 
+    public boolean isExclude() {
+        return shouldExclude;
+    }
+
+    /**
+     * @return whether the filter set should be resolved before the search and added to its query.
+     */
+    public boolean isPrefilter() {
+        //a probe needs the hits
+        return prefilter && !isProbe();
+    }
+
+    /**
+     * @return whether the query is run for chunks of hit ids instead of returning the whole set.
+     */
+    public boolean isProbe() {
+        return probeSize > 0;
+    }
+
     public String getIdResultName() {
         return null != idResultName ? idResultName : DEFAULT_ID_RESULT_NAME;
     }
 
+    /**
+     * @return the parameters of the <code>graph_filter</code> query filtering the same documents on the shards, or
+     * <code>null</code> if this filter can't be run there.
+     */
+    public Map<String, Object> getGraphFilterClause() {
+        if (getClass() != SearchResultCypherFilter.class || isProbe()) {
+            //the query parser only knows the plain filter
+            return null;
+        }
+        Map<String, Object> clause = new HashMap<>();
+        clause.put(QUERY, cypherQuery);
+        clause.put(PARAMS, params);
+        clause.put(EXCLUDE, shouldExclude);
+        clause.put(ID_RESULT_NAME_KEY, getIdResultName());
+        clause.put(PROTOCOL, protocol);
+        return clause;
+    }
+
     private static String getIdentifier(Object objectId) {
         if (objectId instanceof String) {
             return (String) objectId;
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.filter;
+
+import com.graphaware.es.gas.annotation.SearchFilter;
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.materialized.FilterSet;
+import com.graphaware.es.gas.materialized.MaterializedFilters;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.EXCLUDE;
+import static com.graphaware.es.gas.domain.ClauseConstants.MATERIALIZATION;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
+
+@SearchFilter(name = "SearchResultMaterializedFilter")
+public class SearchResultMaterializedFilter extends SearchResultCypherFilter {
+
+    private String materialization;
+
+    public SearchResultMaterializedFilter(Settings settings, IndexInfo indexSettings) {
+        super(settings, indexSettings);
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+        Map<?, ?> extParams = (Map<?, ?>) sourceAsMap.get(GAS_FILTER_CLAUSE);
+        if (extParams != null && extParams.get(MATERIALIZATION) != null) {
+            materialization = String.valueOf(extParams.get(MATERIALIZATION));
+        }
+        super.parseRequest(sourceAsMap);
+    }
+
+    @Override
+    protected void validateRequest() {
+        if (null == materialization) {
+            throw new RuntimeException("The materialization Parameter is required in gas-filter");
+        }
+    }
+
+    @Override
+    public String getBatchKey() {
+        return Arrays.asList(getClass().getName(), materialization).toString();
+    }
+
+    @Override
+    public boolean isBatchable() {
+        //no remote lookup to share
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getGraphFilterClause() {
+        if (getClass() != SearchResultMaterializedFilter.class || isProbe()) {
+            return null;
+        }
+        Map<String, Object> clause = new HashMap<>();
+        clause.put(MATERIALIZATION, materialization);
+        clause.put(EXCLUDE, isExclude());
+        return clause;
+    }
+
+    @Override
+    protected Set<String> getProbedItems(Set<String> ids) {
+        //the whole set is in memory
+        return getFilteredItems();
+    }
+
+    @Override
+    protected Set<String> getFilteredItems() {
+        FilterSet filter = MaterializedFilters.get(materialization);
+        if (filter == null) {
+            throw new RuntimeException("The materialized filter " + materialization + " is not available");
+        }
+        return filter;
+    }
+}
@@ -63,6 +63,7 @@ public class SearchResultSqlFilter extends CypherSettingsReader implements Searc
     private int from;
     private boolean shouldExclude = true;
     private String idResultName;
+    private Set<String> remoteFilter;
     private String sqlQuery;
     private String sqlConnectionString;
 
@@ -85,7 +86,9 @@ public class SearchResultSqlFilter extends CypherSettingsReader implements Searc
             idResultName = extParams.containsKey(ID_RESULT_NAME_KEY) ? String.valueOf(extParams.get(ID_RESULT_NAME_KEY)) : null;
         }
         if (maxResultSize > 0) {
+            //the filter pages the window itself
             sourceAsMap.put(SIZE, maxResultSize);
+            sourceAsMap.put(FROM, 0);
         }
         if (null == sqlQuery) {
             throw new RuntimeException("The query Parameter is required in gas-filter");
@@ -105,7 +108,7 @@ public class SearchResultSqlFilter extends CypherSettingsReader implements Searc
             hitMap.put(hit.getId(), hit);
         }
 
-        Set<String> remoteFilter = getFilteredItems();
+        Set<String> remoteFilter = getRemoteFilter();
         esLogger.debug("InternalSearchHits - remoteFilter.size():" + remoteFilter.size());
         esLogger.debug("InternalSearchHits - remoteFilter:" + remoteFilter);
         esLogger.debug("InternalSearchHits - shouldExclude:" + shouldExclude);
@@ -138,7 +141,7 @@ public class SearchResultSqlFilter extends CypherSettingsReader implements Searc
         final int arraySize = (size + from) < k ? size
                 : (k - from) > 0 ? (k - from) : 0;
         if (arraySize == 0) {
-            return new InternalSearchHits(new InternalSearchHit[0], 0, 0);
+            return new InternalSearchHits(new InternalSearchHit[0], totalSize, 0);
         }
 
         InternalSearchHit[] newSearchHits = new InternalSearchHit[arraySize];
@@ -154,6 +157,14 @@ public class SearchResultSqlFilter extends CypherSettingsReader implements Searc
                 hits.maxScore());
     }
 
+    private Set<String> getRemoteFilter() {
+        //computed once per request, or once per scroll for scrolled searches
+        if (remoteFilter == null) {
+            remoteFilter = getFilteredItems();
+        }
+        return remoteFilter;
+    }
+
     protected Set<String> getFilteredItems() {
         CypherResult result = getSqlResult();
 
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable set of ids stored as a sorted array. Changes produce a new snapshot, so readers never block.
+ */
+public class FilterSet extends AbstractSet<String> {
+
+    public static final FilterSet EMPTY = new FilterSet(new String[0]);
+
+    private final String[] ids;
+
+    private FilterSet(String[] ids) {
+        this.ids = ids;
+    }
+
+    public static FilterSet of(Collection<String> ids) {
+        return new FilterSet(new TreeSet<>(ids).toArray(new String[0]));
+    }
+
+    /**
+     * Merges the changes into a copy of the sorted ids, changes which are already reflected in the set are skipped.
+     */
+    public FilterSet apply(Set<String> added, Set<String> removed) {
+        TreeSet<String> additions = new TreeSet<>();
+        for (String id : added) {
+            if (!contains(id) && !removed.contains(id)) {
+                additions.add(id);
+            }
+        }
+        boolean removes = false;
+        for (String id : removed) {
+            if (contains(id)) {
+                removes = true;
+                break;
+            }
+        }
+        if (additions.isEmpty() && !removes) {
+            return this;
+        }
+
+        String[] result = new String[ids.length + additions.size()];
+        Iterator<String> iterator = additions.iterator();
+        String next = iterator.hasNext() ? iterator.next() : null;
+        int size = 0;
+        for (String id : ids) {
+            while (next != null && next.compareTo(id) < 0) {
+                result[size++] = next;
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            if (!removed.contains(id)) {
+                result[size++] = id;
+            }
+        }
+        while (next != null) {
+            result[size++] = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+        }
+        return new FilterSet(size == result.length ? result : Arrays.copyOf(result, size));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && Arrays.binarySearch(ids, o) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return Arrays.asList(ids).iterator();
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+}
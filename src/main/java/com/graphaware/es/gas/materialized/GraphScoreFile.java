@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped map of ids to scores. The ids are sorted by their UTF-8 bytes, so a lookup is a binary
+ * search over the mapped file without any allocation besides the encoded key.
+ * <p>
+ * Layout: entry count, count + 1 offsets into the id bytes, count scores, id bytes.
+ */
+public class GraphScoreFile {
+
+    private static final int INT_SIZE = 4;
+    private static final int FLOAT_SIZE = 4;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int scoresStart;
+    private final int idsStart;
+
+    private GraphScoreFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(0);
+        this.scoresStart = INT_SIZE + (count + 1) * INT_SIZE;
+        this.idsStart = scoresStart + count * FLOAT_SIZE;
+    }
+
+    public static GraphScoreFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GraphScoreFile(buffer);
+        }
+    }
+
+    public static void write(Path path, Map<String, Float> scores) throws IOException {
+        List<Map.Entry<byte[], Float>> entries = new ArrayList<>(scores.size());
+        int idsLength = 0;
+        for (Map.Entry<String, Float> score : scores.entrySet()) {
+            byte[] id = score.getKey().getBytes(StandardCharsets.UTF_8);
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(id, score.getValue()));
+            idsLength += id.length;
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<byte[], Float>>() {
+            @Override
+            public int compare(Map.Entry<byte[], Float> o1, Map.Entry<byte[], Float> o2) {
+                return compareBytes(o1.getKey(), o2.getKey());
+            }
+        });
+
+        int count = entries.size();
+        ByteBuffer buffer = ByteBuffer.allocate(INT_SIZE + (count + 1) * INT_SIZE + count * FLOAT_SIZE + idsLength);
+        buffer.putInt(count);
+        int offset = 0;
+        for (Map.Entry<byte[], Float> entry : entries) {
+            buffer.putInt(offset);
+            offset += entry.getKey().length;
+        }
+        buffer.putInt(offset);
+        for (Map.Entry<byte[], Float> entry : entries) {
+            buffer.putFloat(entry.getValue());
+        }
+        for (Map.Entry<byte[], Float> entry : entries) {
+            buffer.put(entry.getKey());
+        }
+        buffer.flip();
+
+        //readers keep the previous mapping until the new file is complete
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Float get(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTo(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.getFloat(scoresStart + mid * FLOAT_SIZE);
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private int compareTo(int index, byte[] key) {
+        int start = idsStart + buffer.getInt(INT_SIZE + index * INT_SIZE);
+        int end = idsStart + buffer.getInt(INT_SIZE + (index + 1) * INT_SIZE);
+        int length = end - start;
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int cmp = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.PathUtils;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.createIndexInfo;
+
+/**
+ * Periodically runs the Cypher query of every materialized booster configured on the node and stores the scores in a
+ * local {@link GraphScoreFile}, so boosting with them needs no call to Neo4j.
+ */
+public class MaterializedBoosterService extends AbstractLifecycleComponent<MaterializedBoosterService> {
+
+    public static final String MATERIALIZED_BOOSTERS = "gas.materialized.boosters.";
+    public static final String MATERIALIZED_PATH = "gas.materialized.path";
+    public static final String INDEX = "index";
+    public static final String INTERVAL = "interval";
+
+    private static final TimeValue DEFAULT_INTERVAL = TimeValue.timeValueHours(1);
+    private static final TimeValue FIRST_LOAD_RETRY = TimeValue.timeValueSeconds(10);
+
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final Path path;
+    private final Map<String, Settings> materializations;
+    private final List<ThreadPool.Cancellable> refreshes = new ArrayList<>();
+
+    @Inject
+    public MaterializedBoosterService(Settings settings, ClusterService clusterService, ThreadPool threadPool, Environment environment) {
+        super(settings);
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        String configuredPath = settings.get(MATERIALIZED_PATH);
+        this.path = configuredPath != null ? PathUtils.get(configuredPath) : environment.dataFiles()[0].resolve("gas");
+        this.materializations = settings.getGroups(MATERIALIZED_BOOSTERS);
+    }
+
+    @Override
+    protected void doStart() {
+        if (materializations.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(path);
+        } catch (IOException e) {
+            logger.warn("Unable to create {}, materialized boosters are disabled", e, path);
+            return;
+        }
+
+        for (final Map.Entry<String, Settings> materialization : materializations.entrySet()) {
+            open(materialization.getKey());
+            Runnable refresh = new Runnable() {
+                @Override
+                public void run() {
+                    refresh(materialization.getKey(), materialization.getValue());
+                }
+            };
+            threadPool.generic().execute(firstLoad(materialization.getKey(), materialization.getValue()));
+            TimeValue interval = materialization.getValue().getAsTime(INTERVAL, DEFAULT_INTERVAL);
+            refreshes.add(threadPool.scheduleWithFixedDelay(refresh, interval, ThreadPool.Names.GENERIC));
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        for (ThreadPool.Cancellable refresh : refreshes) {
+            refresh.cancel();
+        }
+        refreshes.clear();
+    }
+
+    @Override
+    protected void doClose() {
+        for (String name : materializations.keySet()) {
+            MaterializedScores.remove(name);
+        }
+    }
+
+    /**
+     * The index metadata may not have been recovered yet when the node starts, so the first load is retried shortly
+     * until it succeeds instead of waiting for the next refresh interval.
+     */
+    private Runnable firstLoad(final String name, final Settings materialization) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!refresh(name, materialization) && lifecycle.started()) {
+                    threadPool.schedule(FIRST_LOAD_RETRY, ThreadPool.Names.GENERIC, this);
+                }
+            }
+        };
+    }
+
+    private void open(String name) {
+        //scores of the previous run are served until the first refresh completes
+        Path file = file(name);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            MaterializedScores.put(name, GraphScoreFile.open(file));
+        } catch (IOException e) {
+            logger.warn("Unable to open materialized scores {}", e, file);
+        }
+    }
+
+    boolean refresh(final String name, Settings materialization) {
+        IndexInfo indexInfo = indexInfo(materialization.get(INDEX));
+        if (indexInfo == null || !indexInfo.isEnabled()) {
+            logger.debug("Index {} of materialized booster {} is not available or not enabled", materialization.get(INDEX), name);
+            return false;
+        }
+
+        try {
+            final MaterializedScoreLoader loader = new MaterializedScoreLoader(settings, indexInfo, materialization);
+            Map<String, Float> scores = AccessController.doPrivileged(new PrivilegedAction<Map<String, Float>>() {
+                @Override
+                public Map<String, Float> run() {
+                    return loader.load();
+                }
+            });
+            Path file = file(name);
+            GraphScoreFile.write(file, scores);
+            MaterializedScores.put(name, GraphScoreFile.open(file));
+            logger.debug("Materialized {} scores for {}", scores.size(), name);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Failed to refresh materialized booster {}", e, name);
+            return false;
+        }
+    }
+
+    private IndexInfo indexInfo(String index) {
+        if (index == null) {
+            return null;
+        }
+        IndexMetaData indexMetaData = clusterService.state().getMetaData().index(index);
+        return indexMetaData != null ? createIndexInfo(indexMetaData.getSettings()) : null;
+    }
+
+    private Path file(String name) {
+        return path.resolve(name + ".scores");
+    }
+}
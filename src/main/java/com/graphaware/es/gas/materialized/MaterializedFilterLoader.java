@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import com.graphaware.es.gas.cypher.CypherEndPoint;
+import com.graphaware.es.gas.cypher.CypherResult;
+import com.graphaware.es.gas.cypher.CypherSettingsReader;
+import com.graphaware.es.gas.cypher.ResultRow;
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+
+/**
+ * Keeps a materialized filter set up to date: the first load runs the full query, the next ones run the delta query
+ * with the highest cursor seen so far and apply only the returned additions and removals. The delta query re-reads the
+ * rows at the cursor itself, so changes sharing the timestamp of the last refresh are not missed; rows already applied
+ * leave the set unchanged.
+ */
+public class MaterializedFilterLoader extends CypherSettingsReader {
+
+    public static final String DELTA_QUERY = "deltaQuery";
+    public static final String CURSOR = "cursor";
+    public static final String REMOVED = "removed";
+    public static final String SINCE = "since";
+
+    private final String query;
+    private final String deltaQuery;
+    private final String idResultName;
+    private final String cursorResultName;
+    private final String removedResultName;
+    private final String protocol;
+    private final IndexInfo indexInfo;
+
+    private FilterSet filter;
+    private Object cursor;
+
+    public MaterializedFilterLoader(Settings settings, IndexInfo indexInfo, Settings materialization) {
+        super(settings, indexInfo);
+        this.indexInfo = indexInfo;
+        this.query = materialization.get(QUERY);
+        this.deltaQuery = materialization.get(DELTA_QUERY);
+        this.idResultName = materialization.get(IDENTIFIER, "id");
+        this.cursorResultName = materialization.get(CURSOR, CURSOR);
+        this.removedResultName = materialization.get(REMOVED, REMOVED);
+        this.protocol = materialization.get(PROTOCOL, "http");
+        if (query == null) {
+            throw new IllegalArgumentException("The " + QUERY + " setting is required for a materialized filter");
+        }
+    }
+
+    /**
+     * @return the settings of the index the loader connects to Neo4j with.
+     */
+    public IndexInfo getIndexInfo() {
+        return indexInfo;
+    }
+
+    public synchronized FilterSet load() {
+        if (filter == null || deltaQuery == null || cursor == null) {
+            filter = fullLoad();
+        } else {
+            filter = deltaLoad();
+        }
+        return filter;
+    }
+
+    private FilterSet fullLoad() {
+        Set<String> ids = new HashSet<>();
+        Object highest = null;
+        for (ResultRow resultRow : execute(query, new HashMap<String, Object>()).getRows()) {
+            ids.add(id(resultRow));
+            highest = max(highest, resultRow.get(cursorResultName));
+        }
+        cursor = highest;
+        return FilterSet.of(ids);
+    }
+
+    private FilterSet deltaLoad() {
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put(SINCE, cursor);
+
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        Object highest = cursor;
+        for (ResultRow resultRow : execute(deltaQuery, parameters).getRows()) {
+            String id = id(resultRow);
+            if (Boolean.parseBoolean(String.valueOf(resultRow.get(removedResultName)))) {
+                removed.add(id);
+                added.remove(id);
+            } else {
+                added.add(id);
+                removed.remove(id);
+            }
+            highest = max(highest, resultRow.get(cursorResultName));
+        }
+        cursor = highest;
+        return filter.apply(added, removed);
+    }
+
+    private CypherResult execute(String cypherQuery, HashMap<String, Object> parameters) {
+        CypherEndPoint cypherEndPoint = createCypherEndPoint(protocol, getSettings());
+        return cypherEndPoint.executeCypher(cypherQuery, parameters);
+    }
+
+    private String id(ResultRow resultRow) {
+        if (!resultRow.getValues().containsKey(idResultName)) {
+            throw new RuntimeException("The cypher query result must contain the " + idResultName + " column name");
+        }
+        return String.valueOf(resultRow.get(idResultName));
+    }
+
+    static Object max(Object current, Object candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null) {
+            return candidate;
+        }
+        if (current instanceof Number && candidate instanceof Number) {
+            return ((Number) candidate).doubleValue() > ((Number) current).doubleValue() ? candidate : current;
+        }
+        return String.valueOf(candidate).compareTo(String.valueOf(current)) > 0 ? candidate : current;
+    }
+}
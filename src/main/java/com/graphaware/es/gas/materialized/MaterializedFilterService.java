@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.createIndexInfo;
+
+/**
+ * Keeps every materialized filter set configured on the node up to date by polling its Cypher delta query.
+ */
+public class MaterializedFilterService extends AbstractLifecycleComponent<MaterializedFilterService> {
+
+    public static final String MATERIALIZED_FILTERS = "gas.materialized.filters.";
+    public static final String INDEX = "index";
+    public static final String INTERVAL = "interval";
+
+    private static final TimeValue DEFAULT_INTERVAL = TimeValue.timeValueMinutes(1);
+
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final Map<String, Settings> materializations;
+    private final Map<String, MaterializedFilterLoader> loaders = new ConcurrentHashMap<>();
+    private final List<ThreadPool.Cancellable> refreshes = new ArrayList<>();
+
+    @Inject
+    public MaterializedFilterService(Settings settings, ClusterService clusterService, ThreadPool threadPool) {
+        super(settings);
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.materializations = settings.getGroups(MATERIALIZED_FILTERS);
+    }
+
+    @Override
+    protected void doStart() {
+        for (final Map.Entry<String, Settings> materialization : materializations.entrySet()) {
+            Runnable refresh = new Runnable() {
+                @Override
+                public void run() {
+                    refresh(materialization.getKey(), materialization.getValue());
+                }
+            };
+            threadPool.generic().execute(refresh);
+            TimeValue interval = materialization.getValue().getAsTime(INTERVAL, DEFAULT_INTERVAL);
+            refreshes.add(threadPool.scheduleWithFixedDelay(refresh, interval, ThreadPool.Names.GENERIC));
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        for (ThreadPool.Cancellable refresh : refreshes) {
+            refresh.cancel();
+        }
+        refreshes.clear();
+    }
+
+    @Override
+    protected void doClose() {
+        for (String name : materializations.keySet()) {
+            MaterializedFilters.remove(name);
+        }
+    }
+
+    void refresh(String name, Settings materialization) {
+        final MaterializedFilterLoader loader = loader(name, materialization);
+        if (loader == null) {
+            logger.debug("Index {} of materialized filter {} is not available or not enabled", materialization.get(INDEX), name);
+            return;
+        }
+
+        try {
+            FilterSet filter = AccessController.doPrivileged(new PrivilegedAction<FilterSet>() {
+                @Override
+                public FilterSet run() {
+                    return loader.load();
+                }
+            });
+            MaterializedFilters.put(name, filter);
+            logger.debug("Materialized filter {} has {} ids", name, filter.size());
+        } catch (Exception e) {
+            //the previous snapshot is still served
+            logger.warn("Failed to refresh materialized filter {}", e, name);
+        }
+    }
+
+    private MaterializedFilterLoader loader(String name, Settings materialization) {
+        IndexInfo indexInfo = indexInfo(materialization.get(INDEX));
+        if (indexInfo == null || !indexInfo.isEnabled()) {
+            loaders.remove(name);
+            return null;
+        }
+        MaterializedFilterLoader loader = loaders.get(name);
+        if (loader == null || !indexInfo.equals(loader.getIndexInfo())) {
+            //the index settings have changed, the set is loaded from scratch with the new ones
+            loader = new MaterializedFilterLoader(settings, indexInfo, materialization);
+            loaders.put(name, loader);
+        }
+        return loader;
+    }
+
+    private IndexInfo indexInfo(String index) {
+        if (index == null) {
+            return null;
+        }
+        IndexMetaData indexMetaData = clusterService.state().getMetaData().index(index);
+        return indexMetaData != null ? createIndexInfo(indexMetaData.getSettings()) : null;
+    }
+}
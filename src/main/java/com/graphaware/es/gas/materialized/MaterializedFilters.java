@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-wide registry of the current snapshots of the materialized filter sets, read by
+ * {@link com.graphaware.es.gas.filter.SearchResultMaterializedFilter}.
+ */
+public final class MaterializedFilters {
+
+    private static final Map<String, FilterSet> FILTERS = new ConcurrentHashMap<>();
+
+    public static FilterSet get(String name) {
+        return FILTERS.get(name);
+    }
+
+    static void put(String name, FilterSet filter) {
+        FILTERS.put(name, filter);
+    }
+
+    static void remove(String name) {
+        FILTERS.remove(name);
+    }
+
+    private MaterializedFilters() {
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import com.graphaware.es.gas.cypher.CypherEndPoint;
+import com.graphaware.es.gas.cypher.CypherResult;
+import com.graphaware.es.gas.cypher.CypherSettingsReader;
+import com.graphaware.es.gas.cypher.ResultRow;
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.util.NumberUtil;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+
+/**
+ * Runs the Cypher query of a materialized booster, which returns the scores of all the documents at once.
+ */
+public class MaterializedScoreLoader extends CypherSettingsReader {
+
+    private final String query;
+    private final String idResultName;
+    private final String scoreResultName;
+    private final String protocol;
+
+    public MaterializedScoreLoader(Settings settings, IndexInfo indexInfo, Settings materialization) {
+        super(settings, indexInfo);
+        this.query = materialization.get(QUERY);
+        this.idResultName = materialization.get(IDENTIFIER, "id");
+        this.scoreResultName = materialization.get(SCORE_NAME, "score");
+        this.protocol = materialization.get(PROTOCOL, "http");
+        if (query == null) {
+            throw new IllegalArgumentException("The " + QUERY + " setting is required for a materialized booster");
+        }
+    }
+
+    public Map<String, Float> load() {
+        CypherEndPoint cypherEndPoint = createCypherEndPoint(protocol, getSettings());
+        CypherResult result = cypherEndPoint.executeCypher(query, new HashMap<String, Object>());
+        Map<String, Float> scores = new HashMap<>();
+        for (ResultRow resultRow : result.getRows()) {
+            if (!resultRow.getValues().containsKey(idResultName) || !resultRow.getValues().containsKey(scoreResultName)) {
+                throw new RuntimeException(String.format("The cypher query result must contain the %s and %s column names", idResultName, scoreResultName));
+            }
+            scores.put(String.valueOf(resultRow.get(idResultName)), NumberUtil.getFloat(resultRow.get(scoreResultName)));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-wide registry of the loaded materialized scores, read by {@link com.graphaware.es.gas.booster.SearchResultMaterializedBooster}.
+ */
+public final class MaterializedScores {
+
+    private static final Map<String, GraphScoreFile> SCORES = new ConcurrentHashMap<>();
+
+    public static GraphScoreFile get(String name) {
+        return SCORES.get(name);
+    }
+
+    static void put(String name, GraphScoreFile scores) {
+        SCORES.put(name, scores);
+    }
+
+    static void remove(String name) {
+        SCORES.remove(name);
+    }
+
+    private MaterializedScores() {
+    }
+}
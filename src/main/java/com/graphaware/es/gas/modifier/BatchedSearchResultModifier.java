@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import java.util.Set;
+
+/**
+ * A modifier whose remote lookup can be shared with other modifiers having the same batch key, e.g. the sub-requests
+ * of a multi-search. The lookup is executed once with the union of all ids and its result handed to every modifier
+ * before {@link #modify(org.elasticsearch.search.internal.InternalSearchHits)} is called.
+ *
+ * @param <R> result of the remote lookup.
+ */
+public interface BatchedSearchResultModifier<R> extends SearchResultModifier {
+
+    /**
+     * @return key identifying the endpoint and query of the lookup, never <code>null</code>.
+     */
+    String getBatchKey();
+
+    /**
+     * @return whether the lookup can be shared with other modifiers and run ahead of {@link #modify(org.elasticsearch.search.internal.InternalSearchHits)}.
+     */
+    boolean isBatchable();
+
+    R fetch(Set<String> ids);
+
+    void setFetched(R result);
+
+    /**
+     * @return whether the result of the lookup has already been handed to the modifier.
+     */
+    boolean isFetched();
+}
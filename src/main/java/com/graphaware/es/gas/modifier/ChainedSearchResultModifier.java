@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Applies the filters of a search, the most selective first, then the boosters to the surviving hits only, and cuts
+ * the requested page once all of them have run. The lookups of the filters, which do not depend on the hits, are
+ * executed concurrently, and so are the lookups of the boosters for the surviving hits.
+ */
+public class ChainedSearchResultModifier implements SearchResultModifier {
+
+    /**
+     * Size given to every modifier of a chain, so that only the chain pages the hits.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final List<SearchResultModifier> filters;
+    private final List<SearchResultModifier> boosters;
+    private final FilterSelectivity selectivity;
+    private final Executor executor;
+    private final int size;
+    private final int from;
+
+    public ChainedSearchResultModifier(List<SearchResultModifier> filters, List<SearchResultModifier> boosters, FilterSelectivity selectivity, Executor executor, int size, int from) {
+        this.filters = filters;
+        this.boosters = boosters;
+        this.selectivity = selectivity;
+        this.executor = executor;
+        this.size = size;
+        this.from = from;
+    }
+
+    @Override
+    public InternalSearchHits modify(InternalSearchHits hits) {
+        List<SearchResultModifier> orderedFilters = selectivity.order(filters);
+        new ConcurrentSearchResultModifier(orderedFilters, executor).prefetch(hits);
+        for (SearchResultModifier filter : orderedFilters) {
+            int before = hits.internalHits().length;
+            hits = filter.modify(hits);
+            selectivity.record(filter, before, hits.internalHits().length);
+            if (hits.internalHits().length == 0) {
+                return hits;
+            }
+        }
+
+        new ConcurrentSearchResultModifier(boosters, executor).prefetch(hits);
+        for (SearchResultModifier booster : boosters) {
+            hits = booster.modify(hits);
+        }
+
+        return page(hits);
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+        //every modifier has already parsed its own clause
+    }
+
+    public List<SearchResultModifier> getFilters() {
+        return filters;
+    }
+
+    public List<SearchResultModifier> getBoosters() {
+        return boosters;
+    }
+
+    private InternalSearchHits page(InternalSearchHits hits) {
+        InternalSearchHit[] sorted = hits.internalHits().clone();
+        Arrays.sort(sorted, new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o2.score(), o1.score());
+            }
+        });
+        if (from >= sorted.length) {
+            return new InternalSearchHits(new InternalSearchHit[0], hits.totalHits(), 0);
+        }
+        InternalSearchHit[] page = Arrays.copyOfRange(sorted, from, (int) Math.min(sorted.length, (long) from + size));
+        return new InternalSearchHits(page, hits.totalHits(), sorted[0].score());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Executes the remote lookups of all its modifiers concurrently, then applies the modifiers to the hits in their
+ * original order, so that a search with both a booster and a filter waits for a single Neo4j round trip.
+ */
+public class ConcurrentSearchResultModifier implements SearchResultModifier {
+
+    private static final ESLogger logger = Loggers.getLogger(ConcurrentSearchResultModifier.class);
+
+    private final List<SearchResultModifier> modifiers;
+    private final Executor executor;
+
+    public ConcurrentSearchResultModifier(List<SearchResultModifier> modifiers, Executor executor) {
+        this.modifiers = modifiers;
+        this.executor = executor;
+    }
+
+    @Override
+    public InternalSearchHits modify(InternalSearchHits hits) {
+        prefetch(hits);
+        for (SearchResultModifier modifier : modifiers) {
+            hits = modifier.modify(hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Executes the pending remote lookups of the modifiers for the given hits, without applying the modifiers.
+     */
+    public void prefetch(InternalSearchHits hits) {
+        List<BatchedSearchResultModifier<?>> lookups = pendingLookups();
+        if (lookups.size() > 1) {
+            prefetch(lookups, ids(hits));
+        }
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+        //every modifier has already parsed the request
+    }
+
+    public List<SearchResultModifier> getModifiers() {
+        return modifiers;
+    }
+
+    private List<BatchedSearchResultModifier<?>> pendingLookups() {
+        List<BatchedSearchResultModifier<?>> lookups = new ArrayList<>();
+        for (SearchResultModifier modifier : modifiers) {
+            if (modifier instanceof PrivilegedSearchResultModifier) {
+                modifier = ((PrivilegedSearchResultModifier) modifier).getDelegate();
+            }
+            if (modifier instanceof BatchedSearchResultModifier) {
+                BatchedSearchResultModifier<?> batched = (BatchedSearchResultModifier<?>) modifier;
+                //a local or chunked lookup is not worth a thread
+                if (batched.isBatchable() && !batched.isFetched()) {
+                    lookups.add(batched);
+                }
+            }
+        }
+        return lookups;
+    }
+
+    private void prefetch(List<BatchedSearchResultModifier<?>> lookups, Set<String> ids) {
+        List<Lookup<?>> tasks = new ArrayList<>();
+        for (BatchedSearchResultModifier<?> lookup : lookups) {
+            Lookup<?> task = lookup(lookup, ids);
+            tasks.add(task);
+            if (executor != null && tasks.size() < lookups.size()) {
+                executor.execute(task.task);
+            } else {
+                task.task.run();
+            }
+        }
+
+        for (Lookup<?> task : tasks) {
+            try {
+                task.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                logger.warn("Concurrent lookup failed for {}, falling back to its own lookup", e.getCause(), task.modifier.getBatchKey());
+            }
+        }
+    }
+
+    private static <R> Lookup<R> lookup(BatchedSearchResultModifier<R> modifier, Set<String> ids) {
+        return new Lookup<>(modifier, ids);
+    }
+
+    private static Set<String> ids(InternalSearchHits hits) {
+        Set<String> ids = new HashSet<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * The lookup of a modifier, typed by its result.
+     */
+    private static class Lookup<R> {
+
+        private final BatchedSearchResultModifier<R> modifier;
+        private final FutureTask<R> task;
+
+        Lookup(final BatchedSearchResultModifier<R> modifier, final Set<String> ids) {
+            this.modifier = modifier;
+            this.task = new FutureTask<>(new Callable<R>() {
+                @Override
+                public R call() {
+                    return AccessController.doPrivileged(new PrivilegedAction<R>() {
+                        @Override
+                        public R run() {
+                            return modifier.fetch(ids);
+                        }
+                    });
+                }
+            });
+        }
+
+        void complete() throws InterruptedException, ExecutionException {
+            modifier.setFetched(task.get());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Share of the hits kept by each filter, observed per lookup (endpoint, query and parameters), used to apply the most
+ * selective filters first.
+ */
+public class FilterSelectivity {
+
+    private static final int MAX_FILTERS = 1000;
+    //weight of the latest observation in the moving average
+    private static final double WEIGHT = 0.2;
+    private static final double UNKNOWN = 0.5;
+
+    private final Cache<String, Double> kept = CacheBuilder.newBuilder()
+            .maximumSize(MAX_FILTERS)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    public void record(SearchResultModifier filter, int before, int after) {
+        if (before == 0) {
+            return;
+        }
+        String key = key(filter);
+        double ratio = (double) after / before;
+        Double previous = kept.getIfPresent(key);
+        kept.put(key, previous == null ? ratio : previous + WEIGHT * (ratio - previous));
+    }
+
+    public double getKept(SearchResultModifier filter) {
+        Double ratio = kept.getIfPresent(key(filter));
+        return ratio != null ? ratio : UNKNOWN;
+    }
+
+    /**
+     * @return the filters, the ones keeping the smallest share of hits first, in their original order otherwise.
+     */
+    public List<SearchResultModifier> order(List<SearchResultModifier> filters) {
+        if (filters.size() < 2) {
+            return filters;
+        }
+        List<SearchResultModifier> ordered = new ArrayList<>(filters);
+        Collections.sort(ordered, new Comparator<SearchResultModifier>() {
+            @Override
+            public int compare(SearchResultModifier o1, SearchResultModifier o2) {
+                return Double.compare(getKept(o1), getKept(o2));
+            }
+        });
+        return ordered;
+    }
+
+    private static String key(SearchResultModifier filter) {
+        if (filter instanceof PrivilegedSearchResultModifier) {
+            filter = ((PrivilegedSearchResultModifier) filter).getDelegate();
+        }
+        String key = filter instanceof BatchedSearchResultModifier ? ((BatchedSearchResultModifier<?>) filter).getBatchKey() : null;
+        return key != null ? key : filter.getClass().getName();
+    }
+}
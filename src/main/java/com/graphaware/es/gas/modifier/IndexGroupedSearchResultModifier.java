@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Applies the modifiers of each group of indices sharing the same Neo4j configuration to the hits of those indices only,
+ * with the groups running in parallel, then merges the results into the requested page.
+ */
+public class IndexGroupedSearchResultModifier implements SearchResultModifier {
+
+    private final List<IndexGroup> groups;
+    private final Map<String, IndexGroup> groupsByIndex = new HashMap<>();
+    private final Executor executor;
+    private final int size;
+    private final int from;
+
+    public IndexGroupedSearchResultModifier(List<IndexGroup> groups, Executor executor, int size, int from) {
+        this.groups = groups;
+        this.executor = executor;
+        this.size = size;
+        this.from = from;
+        for (IndexGroup group : groups) {
+            for (String index : group.getIndices()) {
+                groupsByIndex.put(index, group);
+            }
+        }
+    }
+
+    @Override
+    public InternalSearchHits modify(final InternalSearchHits hits) {
+        Map<IndexGroup, List<InternalSearchHit>> hitsByGroup = new LinkedHashMap<>();
+        List<InternalSearchHit> ungrouped = new ArrayList<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            IndexGroup group = hit.shard() != null ? groupsByIndex.get(hit.shard().index()) : null;
+            if (group == null) {
+                ungrouped.add(hit);
+                continue;
+            }
+            if (!hitsByGroup.containsKey(group)) {
+                hitsByGroup.put(group, new ArrayList<InternalSearchHit>());
+            }
+            hitsByGroup.get(group).add(hit);
+        }
+
+        List<FutureTask<InternalSearchHits>> tasks = new ArrayList<>();
+        for (Map.Entry<IndexGroup, List<InternalSearchHit>> entry : hitsByGroup.entrySet()) {
+            FutureTask<InternalSearchHits> task = new FutureTask<>(modifyGroup(entry.getKey(), entry.getValue()));
+            tasks.add(task);
+            if (executor != null && tasks.size() < hitsByGroup.size()) {
+                executor.execute(task);
+            } else {
+                task.run();
+            }
+        }
+
+        List<InternalSearchHit> merged = new ArrayList<>(ungrouped);
+        long totalHits = ungrouped.size();
+        for (FutureTask<InternalSearchHits> task : tasks) {
+            InternalSearchHits groupHits = get(task);
+            merged.addAll(Arrays.asList(groupHits.internalHits()));
+            totalHits += groupHits.totalHits();
+        }
+
+        return page(merged, totalHits);
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+        //every group has already parsed its own copy of the request
+    }
+
+    public List<IndexGroup> getGroups() {
+        return groups;
+    }
+
+    private Callable<InternalSearchHits> modifyGroup(final IndexGroup group, final List<InternalSearchHit> groupHits) {
+        return new Callable<InternalSearchHits>() {
+            @Override
+            public InternalSearchHits call() {
+                InternalSearchHits result = new InternalSearchHits(groupHits.toArray(new InternalSearchHit[groupHits.size()]), groupHits.size(), maxScore(groupHits));
+                for (SearchResultModifier modifier : group.getModifiers()) {
+                    result = modifier.modify(result);
+                }
+                return result;
+            }
+        };
+    }
+
+    private InternalSearchHits get(FutureTask<InternalSearchHits> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private InternalSearchHits page(List<InternalSearchHit> merged, long totalHits) {
+        Collections.sort(merged, new Comparator<InternalSearchHit>() {
+            @Override
+            public int compare(InternalSearchHit o1, InternalSearchHit o2) {
+                return Float.compare(o2.score(), o1.score());
+            }
+        });
+
+        if (from >= merged.size()) {
+            return new InternalSearchHits(new InternalSearchHit[0], totalHits, 0);
+        }
+
+        List<InternalSearchHit> page = merged.subList(from, Math.min(merged.size(), from + size));
+        return new InternalSearchHits(page.toArray(new InternalSearchHit[page.size()]), totalHits, maxScore(merged));
+    }
+
+    private static float maxScore(List<InternalSearchHit> hits) {
+        float maxScore = 0;
+        for (InternalSearchHit hit : hits) {
+            maxScore = Math.max(maxScore, hit.score());
+        }
+        return maxScore;
+    }
+
+    public static class IndexGroup {
+
+        private final IndexInfo indexInfo;
+        private final Collection<String> indices;
+        private final List<SearchResultModifier> modifiers;
+
+        public IndexGroup(IndexInfo indexInfo, Collection<String> indices, List<SearchResultModifier> modifiers) {
+            this.indexInfo = indexInfo;
+            this.indices = indices;
+            this.modifiers = modifiers;
+        }
+
+        public IndexInfo getIndexInfo() {
+            return indexInfo;
+        }
+
+        public Collection<String> getIndices() {
+            return indices;
+        }
+
+        public List<SearchResultModifier> getModifiers() {
+            return modifiers;
+        }
+    }
+}
@@ -40,6 +40,10 @@ public class PrivilegedSearchResultModifier implements SearchResultModifier {
         });
     }
 
+    public SearchResultModifier getDelegate() {
+        return delegate;
+    }
+
     @Override
     public void parseRequest(Map<String, Object> sourceAsMap) {
         delegate.parseRequest(sourceAsMap);
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.modifier.IndexGroupedSearchResultModifier.IndexGroup;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the {@link BatchedSearchResultModifier}s of several searches and executes a single remote lookup for all
+ * modifiers sharing the same batch key, with the union of the ids of their hits.
+ */
+public class SearchResultModifierBatcher {
+
+    private final ESLogger logger;
+    private final Map<String, Batch> batches = new LinkedHashMap<>();
+
+    public SearchResultModifierBatcher(Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+    }
+
+    public void add(List<SearchResultModifier> modifiers, InternalSearchHits hits) {
+        Set<String> ids = new HashSet<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            ids.add(hit.getId());
+        }
+        for (SearchResultModifier modifier : modifiers) {
+            add(modifier, ids);
+        }
+    }
+
+    private void add(SearchResultModifier modifier, Set<String> ids) {
+        if (modifier instanceof PrivilegedSearchResultModifier) {
+            add(((PrivilegedSearchResultModifier) modifier).getDelegate(), ids);
+        } else if (modifier instanceof ChainedSearchResultModifier) {
+            ChainedSearchResultModifier chain = (ChainedSearchResultModifier) modifier;
+            //a shared lookup for all the hits is still cheaper than one per search for the surviving hits
+            for (SearchResultModifier filter : chain.getFilters()) {
+                add(filter, ids);
+            }
+            for (SearchResultModifier booster : chain.getBoosters()) {
+                add(booster, ids);
+            }
+        } else if (modifier instanceof WindowSearchResultModifier) {
+            add(((WindowSearchResultModifier) modifier).getDelegate(), ids);
+        } else if (modifier instanceof ConcurrentSearchResultModifier) {
+            for (SearchResultModifier delegate : ((ConcurrentSearchResultModifier) modifier).getModifiers()) {
+                add(delegate, ids);
+            }
+        } else if (modifier instanceof IndexGroupedSearchResultModifier) {
+            for (IndexGroup group : ((IndexGroupedSearchResultModifier) modifier).getGroups()) {
+                for (SearchResultModifier groupModifier : group.getModifiers()) {
+                    add(groupModifier, ids);
+                }
+            }
+        } else if (modifier instanceof BatchedSearchResultModifier) {
+            BatchedSearchResultModifier<?> batched = (BatchedSearchResultModifier<?>) modifier;
+            if (!batched.isBatchable()) {
+                return;
+            }
+            String key = batched.getBatchKey();
+            if (!batches.containsKey(key)) {
+                batches.put(key, new Batch());
+            }
+            batches.get(key).add(batched, ids);
+        }
+    }
+
+    /**
+     * Executes the lookups shared by more than one modifier. Modifiers which are alone in their batch, or whose batch
+     * failed, perform their own lookup when they modify the hits.
+     *
+     * @return number of executed lookups.
+     */
+    public int execute() {
+        int executed = 0;
+        for (Map.Entry<String, Batch> entry : batches.entrySet()) {
+            if (entry.getValue().modifiers.size() < 2) {
+                continue;
+            }
+            try {
+                entry.getValue().execute();
+                executed++;
+            } catch (RuntimeException e) {
+                logger.warn("Batched lookup failed for {}, falling back to individual lookups", e, entry.getKey());
+            }
+        }
+        return executed;
+    }
+
+    private static class Batch {
+
+        private final List<BatchedSearchResultModifier<Object>> modifiers = new ArrayList<>();
+        private final Set<String> ids = new HashSet<>();
+
+        @SuppressWarnings("unchecked")
+        void add(BatchedSearchResultModifier<?> modifier, Set<String> ids) {
+            //modifiers with the same batch key run the same lookup, so they share its result type
+            this.modifiers.add((BatchedSearchResultModifier<Object>) modifier);
+            this.ids.addAll(ids);
+        }
+
+        void execute() {
+            final BatchedSearchResultModifier<Object> first = modifiers.get(0);
+            Object result = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                @Override
+                public Object run() {
+                    return first.fetch(ids);
+                }
+            });
+            for (BatchedSearchResultModifier<Object> modifier : modifiers) {
+                modifier.setFetched(result);
+            }
+        }
+    }
+}
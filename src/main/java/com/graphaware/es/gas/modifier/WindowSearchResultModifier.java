@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Runs its delegate over the whole candidate window, hands the reranked window to a {@link WindowListener} and returns
+ * the requested page of it. The delegate is expected to return the window sorted and unpaged.
+ */
+public class WindowSearchResultModifier implements SearchResultModifier {
+
+    public interface WindowListener {
+
+        void onWindow(InternalSearchHits window);
+    }
+
+    private final SearchResultModifier delegate;
+    private final WindowListener listener;
+    private final int size;
+    private final int from;
+
+    public WindowSearchResultModifier(SearchResultModifier delegate, WindowListener listener, int size, int from) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.size = size;
+        this.from = from;
+    }
+
+    @Override
+    public InternalSearchHits modify(InternalSearchHits hits) {
+        InternalSearchHits window = delegate.modify(hits);
+        listener.onWindow(window);
+
+        InternalSearchHit[] windowHits = window.internalHits();
+        if (from >= windowHits.length) {
+            return new InternalSearchHits(new InternalSearchHit[0], window.totalHits(), window.maxScore());
+        }
+        InternalSearchHit[] page = Arrays.copyOfRange(windowHits, from, (int) Math.min(windowHits.length, (long) from + size));
+        return new InternalSearchHits(page, window.totalHits(), window.maxScore());
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+        //the delegate has already parsed the clauses
+    }
+
+    public SearchResultModifier getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local cache of the graph id sets used by <code>graph_filter</code> queries and of the per-segment bitsets built
+ * from them.
+ */
+public class GraphFilterCache {
+
+    public static final String CACHE_SIZE = "gas.graph_filter.cache.size";
+    public static final String CACHE_EXPIRE = "gas.graph_filter.cache.expire";
+
+    private final Cache<String, Set<String>> sets;
+    private final SegmentCache<FixedBitSet> bitsets = new SegmentCache<>();
+
+    public GraphFilterCache(Settings settings) {
+        TimeValue expire = settings.getAsTime(CACHE_EXPIRE, TimeValue.timeValueSeconds(60));
+        this.sets = CacheBuilder.newBuilder()
+                .maximumSize(settings.getAsLong(CACHE_SIZE, 100L))
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the ids of the filter, resolved once per node and fingerprint until the entry expires.
+     */
+    public Set<String> ids(final SearchResultCypherFilter filter) {
+        if (!filter.isBatchable()) {
+            //kept in memory by the filter itself
+            return fetch(filter);
+        }
+        try {
+            return sets.get(filter.getBatchKey(), new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    return fetch(filter);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public FixedBitSet get(LeafReader reader, Set<String> ids, String variant) {
+        return bitsets.get(reader, ids, variant);
+    }
+
+    public FixedBitSet put(LeafReader reader, Set<String> ids, String variant, FixedBitSet bits) {
+        return bitsets.put(reader, ids, variant, bits);
+    }
+
+    public int segmentCount() {
+        return bitsets.segmentCount();
+    }
+
+    private static Set<String> fetch(final SearchResultCypherFilter filter) {
+        return AccessController.doPrivileged(new PrivilegedAction<Set<String>>() {
+            @Override
+            public Set<String> run() {
+                return filter.fetch(Collections.<String>emptySet());
+            }
+        });
+    }
+}
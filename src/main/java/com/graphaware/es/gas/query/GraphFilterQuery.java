@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Constant score query matching the documents whose id is in a graph id set, or is not when excluding. The set is
+ * translated once per segment into a bitset kept by the {@link GraphFilterCache}.
+ */
+public class GraphFilterQuery extends Query {
+
+    private final String fingerprint;
+    private final Set<String> ids;
+    private final Collection<String> types;
+    private final boolean exclude;
+    private final GraphFilterCache cache;
+    private final String variant;
+
+    public GraphFilterQuery(String fingerprint, Set<String> ids, Collection<String> types, boolean exclude, GraphFilterCache cache) {
+        this.fingerprint = fingerprint;
+        this.ids = ids;
+        this.types = types;
+        this.exclude = exclude;
+        this.cache = cache;
+        this.variant = exclude + ":" + types;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                FixedBitSet bits = bits(context.reader());
+                return new ConstantScoreScorer(this, score(), new BitSetIterator(bits, bits.cardinality()));
+            }
+        };
+    }
+
+    FixedBitSet bits(LeafReader reader) throws IOException {
+        FixedBitSet bits = cache.get(reader, ids, variant);
+        if (bits == null) {
+            bits = cache.put(reader, ids, variant, build(reader));
+        }
+        return bits;
+    }
+
+    private FixedBitSet build(LeafReader reader) throws IOException {
+        FixedBitSet bits = new FixedBitSet(reader.maxDoc());
+        Terms terms = reader.terms(UidFieldMapper.NAME);
+        if (terms != null) {
+            TermsEnum termsEnum = terms.iterator();
+            PostingsEnum postings = null;
+            for (BytesRef uid : Uid.createUidsForTypesAndIds(types, ids)) {
+                if (termsEnum.seekExact(uid)) {
+                    postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                        bits.set(doc);
+                    }
+                }
+            }
+        }
+        if (exclude && bits.length() > 0) {
+            bits.flip(0, bits.length());
+        }
+        return bits;
+    }
+
+    @Override
+    public String toString(String field) {
+        return "graph_filter(" + fingerprint + (exclude ? ", exclude" : "") + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        GraphFilterQuery that = (GraphFilterQuery) o;
+        //a reloaded set is a new query
+        return ids == that.ids && exclude == that.exclude && fingerprint.equals(that.fingerprint) && types.equals(that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hash(fingerprint, System.identityHashCode(ids), exclude, types);
+    }
+}
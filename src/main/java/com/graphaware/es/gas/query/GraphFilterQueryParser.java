@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import com.graphaware.es.gas.filter.SearchResultMaterializedFilter;
+import com.graphaware.es.gas.util.NumberUtil;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryParseContext;
+import org.elasticsearch.index.query.QueryParser;
+import org.elasticsearch.index.query.QueryParsingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.createIndexInfo;
+
+/**
+ * Parses the <code>graph_filter</code> query, which takes the parameters of the <code>SearchResultCypherFilter</code>,
+ * or a <code>materialization</code>, and filters the documents on the shards. The Neo4j connection is read from the
+ * settings of the searched index.
+ */
+public class GraphFilterQueryParser implements QueryParser {
+
+    public static final String NAME = "graph_filter";
+
+    private final Settings settings;
+    private final ClusterService clusterService;
+    private final GraphFilterCache cache;
+
+    @Inject
+    public GraphFilterQueryParser(Settings settings, ClusterService clusterService) {
+        this.settings = settings;
+        this.clusterService = clusterService;
+        this.cache = new GraphFilterCache(settings);
+    }
+
+    @Override
+    public String[] names() {
+        return new String[]{NAME};
+    }
+
+    @Override
+    public Query parse(QueryParseContext parseContext) throws IOException, QueryParsingException {
+        Map<String, Object> clause = parseContext.parser().map();
+        if (clause.get(QUERY) == null && clause.get(MATERIALIZATION) == null) {
+            throw new QueryParsingException(parseContext, "[" + NAME + "] requires a " + QUERY + " or a " + MATERIALIZATION);
+        }
+        if (clause.get(PROBE_SIZE) != null) {
+            //a probe needs the hits, the whole set is needed here
+            throw new QueryParsingException(parseContext, "[" + NAME + "] does not support " + PROBE_SIZE);
+        }
+
+        IndexMetaData indexMetaData = clusterService.state().getMetaData().index(parseContext.index().name());
+        if (indexMetaData == null) {
+            throw new QueryParsingException(parseContext, "[" + NAME + "] unknown index " + parseContext.index().name());
+        }
+        IndexInfo indexInfo = createIndexInfo(indexMetaData.getSettings());
+
+        SearchResultCypherFilter filter = clause.get(MATERIALIZATION) != null
+                ? new SearchResultMaterializedFilter(settings, indexInfo)
+                : new SearchResultCypherFilter(settings, indexInfo);
+        Map<String, Object> source = new HashMap<>();
+        source.put(GAS_FILTER_CLAUSE, new HashMap<>(clause));
+        filter.parseRequest(source);
+
+        Set<String> ids = cache.ids(filter);
+        Query query = new GraphFilterQuery(filter.getBatchKey(), ids, types(parseContext), filter.isExclude(), cache);
+        if (clause.get(BOOST) != null) {
+            query = new BoostQuery(query, NumberUtil.getFloat(clause.get(BOOST)));
+        }
+        return query;
+    }
+
+    private static Collection<String> types(QueryParseContext parseContext) {
+        String[] types = QueryParseContext.getTypes();
+        if (types == null || types.length == 0) {
+            return Collections.unmodifiableList(new ArrayList<>(parseContext.mapperService().types()));
+        }
+        return Arrays.asList(types);
+    }
+}
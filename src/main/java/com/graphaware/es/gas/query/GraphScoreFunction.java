@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.graphaware.es.gas.materialized.GraphScoreFile;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.lucene.search.function.LeafScoreFunction;
+import org.elasticsearch.common.lucene.search.function.ScoreFunction;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Score function reading the graph score of every document from a materialized {@link GraphScoreFile}. The scores of a
+ * segment are looked up once and kept in a {@link SegmentCache} until the segment is closed or the file is refreshed.
+ */
+public class GraphScoreFunction extends ScoreFunction {
+
+    private final String materialization;
+    private final GraphScoreFile scores;
+    private final float missing;
+    private final SegmentCache<float[]> cache;
+
+    public GraphScoreFunction(String materialization, GraphScoreFile scores, float missing, SegmentCache<float[]> cache) {
+        super(CombineFunction.MULT);
+        this.materialization = materialization;
+        this.scores = scores;
+        this.missing = missing;
+        this.cache = cache;
+    }
+
+    @Override
+    public LeafScoreFunction getLeafScoreFunction(LeafReaderContext ctx) throws IOException {
+        final float[] segmentScores = scores(ctx.reader());
+        return new LeafScoreFunction() {
+            @Override
+            public double score(int docId, float subQueryScore) {
+                return segmentScores[docId];
+            }
+
+            @Override
+            public Explanation explainScore(int docId, Explanation subQueryScore) {
+                return Explanation.match(segmentScores[docId], "graph_score from " + materialization);
+            }
+        };
+    }
+
+    float[] scores(LeafReader reader) throws IOException {
+        String variant = String.valueOf(missing);
+        float[] segmentScores = cache.get(reader, scores, variant);
+        if (segmentScores == null) {
+            segmentScores = cache.put(reader, scores, variant, build(reader));
+        }
+        return segmentScores;
+    }
+
+    private float[] build(LeafReader reader) throws IOException {
+        float[] segmentScores = new float[reader.maxDoc()];
+        Arrays.fill(segmentScores, missing);
+        Terms terms = reader.terms(UidFieldMapper.NAME);
+        if (terms == null) {
+            return segmentScores;
+        }
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        for (BytesRef uid = termsEnum.next(); uid != null; uid = termsEnum.next()) {
+            Float score = scores.get(Uid.createUid(uid.utf8ToString()).id());
+            if (score == null) {
+                continue;
+            }
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                segmentScores[doc] = score;
+            }
+        }
+        return segmentScores;
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+}
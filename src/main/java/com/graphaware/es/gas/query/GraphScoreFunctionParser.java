@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.graphaware.es.gas.materialized.GraphScoreFile;
+import com.graphaware.es.gas.materialized.MaterializedScores;
+import com.graphaware.es.gas.util.NumberUtil;
+import org.elasticsearch.common.lucene.search.function.ScoreFunction;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.QueryParseContext;
+import org.elasticsearch.index.query.QueryParsingException;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionParser;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.MATERIALIZATION;
+
+/**
+ * Parses the <code>graph_score</code> function of <code>function_score</code> queries, which scores the documents with
+ * a materialized booster on the shards.
+ */
+public class GraphScoreFunctionParser implements ScoreFunctionParser {
+
+    public static final String NAME = "graph_score";
+    public static final String MISSING = "missing";
+
+    private final SegmentCache<float[]> cache = new SegmentCache<>();
+
+    @Override
+    public ScoreFunction parse(QueryParseContext parseContext, XContentParser parser) throws IOException, QueryParsingException {
+        Map<String, Object> params = parser.map();
+        Object materialization = params.get(MATERIALIZATION);
+        if (materialization == null) {
+            throw new QueryParsingException(parseContext, "[" + NAME + "] requires a " + MATERIALIZATION);
+        }
+        GraphScoreFile scores = MaterializedScores.get(String.valueOf(materialization));
+        if (scores == null) {
+            throw new QueryParsingException(parseContext, "[" + NAME + "] the materialized booster " + materialization + " is not available");
+        }
+        return new GraphScoreFunction(String.valueOf(materialization), scores, params.get(MISSING) != null ? NumberUtil.getFloat(params.get(MISSING)) : 0f, cache);
+    }
+
+    @Override
+    public String[] getNames() {
+        return new String[]{NAME};
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.lucene.index.LeafReader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Per-segment values computed from a node-local source, like an id set or a score table. Values are dropped when
+ * their segment is closed, or when their source is not referenced anymore.
+ */
+public class SegmentCache<V> {
+
+    private final ConcurrentMap<Object, Cache<Object, ConcurrentMap<String, V>>> segments = new ConcurrentHashMap<>();
+
+    private final LeafReader.CoreClosedListener onSegmentClosed = new LeafReader.CoreClosedListener() {
+        @Override
+        public void onClose(Object ownerCoreCacheKey) {
+            segments.remove(ownerCoreCacheKey);
+        }
+    };
+
+    public V get(LeafReader reader, Object source, String variant) {
+        Cache<Object, ConcurrentMap<String, V>> segment = segments.get(reader.getCoreCacheKey());
+        if (segment == null) {
+            return null;
+        }
+        ConcurrentMap<String, V> variants = segment.getIfPresent(source);
+        return variants != null ? variants.get(variant) : null;
+    }
+
+    /**
+     * @return the cached value, which is the given one unless another search computed it concurrently.
+     */
+    public V put(LeafReader reader, Object source, String variant, V value) {
+        Object coreKey = reader.getCoreCacheKey();
+        Cache<Object, ConcurrentMap<String, V>> segment = segments.get(coreKey);
+        if (segment == null) {
+            //weak keys compare by identity, a reloaded source never hits the values of the previous one
+            Cache<Object, ConcurrentMap<String, V>> created = CacheBuilder.newBuilder().weakKeys().build();
+            segment = segments.putIfAbsent(coreKey, created);
+            if (segment == null) {
+                segment = created;
+                reader.addCoreClosedListener(onSegmentClosed);
+            }
+        }
+        ConcurrentMap<String, V> variants;
+        try {
+            variants = segment.get(source, new Callable<ConcurrentMap<String, V>>() {
+                @Override
+                public ConcurrentMap<String, V> call() {
+                    return new ConcurrentHashMap<>();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        V existing = variants.putIfAbsent(variant, value);
+        return existing != null ? existing : value;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.graphaware.es.gas.booster.SearchResultCypherBooster;
+import com.graphaware.es.gas.domain.ExternalResult;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the graph scores of the boosters rescored on the shards, kept on the coordinating node. The whole result of
+ * a booster is loaded once per lookup key, concurrent searches with the same key wait for the same load. Results with
+ * more than <code>gas.rescore.max_scores</code> scores are not sent to the shards, the booster then runs on the
+ * coordinating node.
+ */
+public class GraphScoreCache {
+
+    public static final String CACHE_SIZE = "gas.rescore.cache.size";
+    public static final String CACHE_EXPIRE = "gas.rescore.cache.expire";
+    public static final String MAX_SCORES = "gas.rescore.max_scores";
+
+    //kept in place of an oversized result, so it is not loaded again until it expires
+    private static final Map<String, Float> OVERSIZED = Collections.unmodifiableMap(new HashMap<String, Float>());
+
+    private final ESLogger logger;
+    private final Cache<String, Map<String, Float>> scores;
+    private final long maxScores;
+
+    public GraphScoreCache(Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        TimeValue expire = settings.getAsTime(CACHE_EXPIRE, TimeValue.timeValueSeconds(60));
+        long cacheSize = settings.getAsLong(CACHE_SIZE, 1000000L);
+        this.maxScores = Math.min(cacheSize, settings.getAsLong(MAX_SCORES, 10000L));
+        this.scores = CacheBuilder.newBuilder()
+                .concurrencyLevel(16)
+                .maximumWeight(cacheSize)
+                .weigher(new Weigher<String, Map<String, Float>>() {
+                    @Override
+                    public int weigh(String key, Map<String, Float> value) {
+                        return Math.max(1, value.size());
+                    }
+                })
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the scores of all the documents boosted by the booster, <code>null</code> if there are too many of them.
+     */
+    public Map<String, Float> get(final SearchResultCypherBooster booster) {
+        return get(booster.getBatchKey(), new Callable<Map<String, Float>>() {
+            @Override
+            public Map<String, Float> call() {
+                Map<String, ExternalResult> results = AccessController.doPrivileged(new PrivilegedAction<Map<String, ExternalResult>>() {
+                    @Override
+                    public Map<String, ExternalResult> run() {
+                        return booster.fetchAll();
+                    }
+                });
+                Map<String, Float> scores = new HashMap<>();
+                for (ExternalResult result : results.values()) {
+                    scores.put(result.getObjectId(), result.getScore());
+                }
+                return scores;
+            }
+        });
+    }
+
+    public Map<String, Float> get(final String lookupKey, final Callable<Map<String, Float>> loader) {
+        Map<String, Float> loaded;
+        try {
+            loaded = scores.get(lookupKey, new Callable<Map<String, Float>>() {
+                @Override
+                public Map<String, Float> call() throws Exception {
+                    Map<String, Float> result = loader.call();
+                    if (result.size() > maxScores) {
+                        logger.warn("{} graph scores for {}, more than {}, the booster runs on the coordinating node", result.size(), lookupKey, maxScores);
+                        return OVERSIZED;
+                    }
+                    return result;
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException("Unable to load the graph scores", e.getCause());
+        }
+        return loaded != OVERSIZED ? loaded : null;
+    }
+
+    public long size() {
+        return scores.size();
+    }
+}
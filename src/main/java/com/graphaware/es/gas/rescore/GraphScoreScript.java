@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import com.graphaware.es.gas.booster.SearchResultCypherBooster;
+import org.elasticsearch.index.fielddata.ScriptDocValues;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.script.AbstractDoubleSearchScript;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Composes the score of a document with its graph score, read from the scores resolved by the coordinating node.
+ */
+public class GraphScoreScript extends AbstractDoubleSearchScript {
+
+    private final SearchResultCypherBooster booster;
+    private final Map<?, ?> scores;
+
+    public GraphScoreScript(SearchResultCypherBooster booster, Map<?, ?> scores) {
+        this.booster = booster;
+        this.scores = scores;
+    }
+
+    @Override
+    public double runAsDouble() {
+        final float esScore;
+        try {
+            esScore = score();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        Object graphScore = scores.get(id());
+        if (graphScore == null) {
+            return esScore;
+        }
+        return booster.composeScore(esScore, ((Number) graphScore).floatValue());
+    }
+
+    private String id() {
+        ScriptDocValues.Strings uid = (ScriptDocValues.Strings) doc().get(UidFieldMapper.NAME);
+        return Uid.createUid(uid.getValue()).id();
+    }
+}
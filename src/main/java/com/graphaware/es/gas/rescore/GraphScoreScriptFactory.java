@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.graphaware.es.gas.booster.SearchResultCypherBooster;
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.script.ExecutableScript;
+import org.elasticsearch.script.NativeScriptFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.createIndexInfo;
+
+/**
+ * Native script used by the shard-level rescorer. The graph scores are resolved by the coordinating node and travel
+ * with the script parameters, so Neo4j is never called on the shards. The operator is read from the booster parsed
+ * with the settings of the index named in the parameters, parsed boosters are kept on the node.
+ */
+public class GraphScoreScriptFactory implements NativeScriptFactory {
+
+    public static final String NAME = "gas_graph_score";
+    public static final String INDEX_PARAM = "index";
+    public static final String BOOSTER_PARAM = "booster";
+    public static final String SCORES_PARAM = "scores";
+
+    private final Settings settings;
+    private final ClusterService clusterService;
+    private final Cache<List<Object>, SearchResultCypherBooster> boosters = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    @Inject
+    public GraphScoreScriptFactory(Settings settings, ClusterService clusterService) {
+        this.settings = settings;
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    public ExecutableScript newScript(Map<String, Object> params) {
+        if (params == null || params.get(INDEX_PARAM) == null || !(params.get(BOOSTER_PARAM) instanceof Map)) {
+            throw new IllegalArgumentException("Missing " + INDEX_PARAM + " or " + BOOSTER_PARAM + " parameter for " + NAME);
+        }
+
+        final IndexMetaData indexMetaData = clusterService.state().getMetaData().index(String.valueOf(params.get(INDEX_PARAM)));
+        if (indexMetaData == null) {
+            throw new IllegalArgumentException("Unknown index " + params.get(INDEX_PARAM));
+        }
+
+        if (!(params.get(SCORES_PARAM) instanceof Map)) {
+            throw new IllegalArgumentException("Missing " + SCORES_PARAM + " parameter for " + NAME);
+        }
+
+        SearchResultCypherBooster booster = booster(indexMetaData, new HashMap<>((Map<?, ?>) params.get(BOOSTER_PARAM)));
+        return new GraphScoreScript(booster, (Map<?, ?>) params.get(SCORES_PARAM));
+    }
+
+    private SearchResultCypherBooster booster(final IndexMetaData indexMetaData, final Map<?, ?> clause) {
+        List<Object> key = Arrays.<Object>asList(indexMetaData.getIndex(), indexMetaData.getVersion(), clause);
+        try {
+            return boosters.get(key, new Callable<SearchResultCypherBooster>() {
+                @Override
+                public SearchResultCypherBooster call() {
+                    IndexInfo indexInfo = createIndexInfo(indexMetaData.getSettings());
+                    Map<String, Object> source = new HashMap<>();
+                    source.put(GAS_BOOSTER_CLAUSE, clause);
+                    SearchResultCypherBooster booster = new SearchResultCypherBooster(settings, indexInfo);
+                    booster.parseRequest(source);
+                    return booster;
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalArgumentException("Invalid " + BOOSTER_PARAM + " parameter for " + NAME, e.getCause());
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return true;
+    }
+}
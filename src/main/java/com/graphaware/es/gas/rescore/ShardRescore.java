@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import com.graphaware.es.gas.util.NumberUtil;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.lookup.SourceLookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+
+/**
+ * Replaces a <code>gas-booster</code> clause asking for the shard engine with a rescore of the top window of every
+ * shard, so the graph scores are composed on the data nodes instead of the coordinating node.
+ */
+public final class ShardRescore {
+
+    public static final String BOOSTER = "SearchResultCypherBooster";
+
+    public static boolean isRequested(Map<String, Object> source) {
+        Object clause = source.get(GAS_BOOSTER_CLAUSE);
+        if (!(clause instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> booster = (Map<?, ?>) clause;
+        return SHARD_ENGINE.equals(booster.get(ENGINE)) && BOOSTER.equals(booster.get(NAME));
+    }
+
+    /**
+     * @return whether a booster of the source may ask for the shard engine, a JSON source is not decoded for it.
+     */
+    public static boolean isRequested(BytesReference source) {
+        if (source == null) {
+            return false;
+        }
+        if (XContentFactory.xContentType(source) == XContentType.JSON) {
+            return source.toUtf8().contains('"' + SHARD_ENGINE + '"');
+        }
+        try {
+            return isRequested(SourceLookup.sourceAsMap(source));
+        } catch (RuntimeException e) {
+            //left to the search to report
+            return false;
+        }
+    }
+
+    /**
+     * @return a copy of the <code>gas-booster</code> clause of the source, without the shard engine parameters.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> booster(Map<String, Object> source) {
+        Map<String, Object> booster = new HashMap<>((Map<String, Object>) source.get(GAS_BOOSTER_CLAUSE));
+        booster.remove(ENGINE);
+        booster.remove(WINDOW_SIZE);
+        return booster;
+    }
+
+    /**
+     * Keeps the booster on the coordinating node, when its scores can't be sent to the shards.
+     */
+    public static void coordinate(Map<String, Object> source) {
+        source.put(GAS_BOOSTER_CLAUSE, booster(source));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void rewrite(Map<String, Object> source, String index, int size, int from, Map<String, Float> scores) {
+        Map<String, Object> booster = new HashMap<>((Map<String, Object>) source.remove(GAS_BOOSTER_CLAUSE));
+        int windowSize = NumberUtil.getInt(booster.remove(WINDOW_SIZE), from + size);
+        booster.remove(ENGINE);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(GraphScoreScriptFactory.INDEX_PARAM, index);
+        params.put(GraphScoreScriptFactory.BOOSTER_PARAM, booster);
+        params.put(GraphScoreScriptFactory.SCORES_PARAM, scores);
+
+        Map<String, Object> script = new HashMap<>();
+        script.put("inline", GraphScoreScriptFactory.NAME);
+        script.put("lang", "native");
+        script.put("params", params);
+
+        Map<String, Object> functionScore = new HashMap<>();
+        //the original query provides the score the graph score is composed with
+        Object query = source.get(QUERY);
+        functionScore.put(QUERY, query instanceof Map ? query : Collections.singletonMap(MATCH_ALL, new HashMap<>()));
+        functionScore.put("script_score", Collections.singletonMap("script", script));
+        functionScore.put("boost_mode", "replace");
+
+        Map<String, Object> rescoreQuery = new HashMap<>();
+        rescoreQuery.put("rescore_query", Collections.singletonMap("function_score", functionScore));
+        rescoreQuery.put("query_weight", 0);
+        rescoreQuery.put("rescore_query_weight", 1);
+        rescoreQuery.put("score_mode", "total");
+
+        Map<String, Object> rescore = new HashMap<>();
+        rescore.put("window_size", windowSize);
+        rescore.put(QUERY, rescoreQuery);
+
+        addRescore(source, rescore);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addRescore(Map<String, Object> source, Map<String, Object> rescore) {
+        Object existing = source.get(RESCORE);
+        if (existing == null) {
+            source.put(RESCORE, rescore);
+            return;
+        }
+        //the graph score is composed with the query score, so it goes before the rescores of the request
+        List<Object> rescores = new ArrayList<>();
+        rescores.add(rescore);
+        if (existing instanceof List) {
+            rescores.addAll((List<Object>) existing);
+        } else {
+            rescores.add(existing);
+        }
+        source.put(RESCORE, rescores);
+    }
+
+    private ShardRescore() {
+    }
+}
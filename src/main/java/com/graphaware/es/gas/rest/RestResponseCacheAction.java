@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rest;
+
+import com.graphaware.es.gas.wrap.ResponseCache;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * Returns the statistics of the response cache of the node, or clears it.
+ */
+public class RestResponseCacheAction extends BaseRestHandler {
+
+    public static final String PATH = "/_gas/response_cache";
+
+    private final ResponseCache responseCache;
+
+    @Inject
+    public RestResponseCacheAction(Settings settings, RestController controller, Client client, ResponseCache responseCache) {
+        super(settings, controller, client);
+        this.responseCache = responseCache;
+        controller.registerHandler(RestRequest.Method.GET, PATH, this);
+        controller.registerHandler(RestRequest.Method.POST, PATH + "/_clear", this);
+    }
+
+    @Override
+    protected void handleRequest(RestRequest request, RestChannel channel, Client client) throws Exception {
+        if (request.method() == RestRequest.Method.POST) {
+            responseCache.clear();
+        }
+        XContentBuilder builder = channel.newBuilder();
+        builder.startObject();
+        responseCache.toXContent(builder, request);
+        builder.endObject();
+        channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+    }
+}
@@ -16,7 +16,10 @@
 
 package com.graphaware.es.gas.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.modifier.ReusableSearchResultModifier;
 import com.graphaware.es.gas.modifier.SearchResultModifier;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
@@ -25,26 +28,38 @@ import org.elasticsearch.common.settings.Settings;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
+import static com.graphaware.es.gas.domain.ClauseConstants.FROM;
 import static com.graphaware.es.gas.domain.ClauseConstants.NAME;
+import static com.graphaware.es.gas.domain.ClauseConstants.SIZE;
 
 public class Instantiator {
 
+    private static final int PARSED_CACHE_SIZE = 1000;
+
     private final ESLogger logger;
     private final Settings settings;
 
-    private final Map<Class<? extends SearchResultModifier>, Map<String, ?>> classCache = new ConcurrentHashMap<>();
+    private final ModifierRegistry registry;
+    private final Cache<ParsedModifierKey, ParsedModifier> parsedCache = CacheBuilder.newBuilder()
+            .maximumSize(PARSED_CACHE_SIZE)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
 
     public Instantiator(Settings settings) {
         this.logger = Loggers.getLogger(getClass(), settings);
         this.settings = settings;
+        this.registry = AccessController.doPrivileged(new PrivilegedAction<ModifierRegistry>() {
+            public ModifierRegistry run() {
+                return ModifierRegistry.load(Instantiator.class.getClassLoader());
+            }
+        });
     }
 
 
@@ -60,10 +75,21 @@ public class Instantiator {
             return null;
         }
 
+        ParsedModifierKey key = new ParsedModifierKey(clazz, indexInfo, params, source.get(SIZE), source.get(FROM));
+        ParsedModifier parsed = parsedCache.getIfPresent(key);
+        if (parsed != null) {
+            parsed.applyTo(source);
+            source.remove(clause);
+            return clazz.cast(parsed.newModifier());
+        }
+
         T result = instantiatePrivileged(name, indexInfo, clazz, annotationClass);
 
         if (result != null) {
             result.parseRequest(source);
+            if (result instanceof ReusableSearchResultModifier) {
+                parsedCache.put(key, new ParsedModifier(((ReusableSearchResultModifier) result).copy(), source.get(SIZE), source.get(FROM)));
+            }
         } else {
             logger.warn("No {} found with name {}", clazz.getName(), name);
         }
@@ -81,54 +107,86 @@ public class Instantiator {
     }
 
     private <T extends SearchResultModifier> T instantiate(String name, IndexInfo indexSettings, Class<T> clazz, Class<? extends Annotation> annotationClass) {
-        Class<T> cls = loadCachedClasses(clazz, annotationClass).get(name.toLowerCase());
+        Constructor<T> constructor = registry.get(annotationClass, clazz, name);
 
-        if (cls == null) {
+        if (constructor == null) {
             return null;
         }
 
         try {
-            try {
-                Constructor<T> constructor = cls.getConstructor(Settings.class, IndexInfo.class);
-                return constructor.newInstance(settings, indexSettings);
-            } catch (NoSuchMethodException ex) {
-                logger.warn("No constructor with settings for class {}. Using default", cls.getName());
-                return cls.newInstance();
+            if (constructor.getParameterTypes().length == 0) {
+                return constructor.newInstance();
             }
+            return constructor.newInstance(settings, indexSettings);
         } catch (InstantiationException | IllegalAccessException | InvocationTargetException | SecurityException ex) {
-            logger.error("Error while initializing new {}", cls.getName(), ex);
+            logger.error("Error while initializing new {}", constructor.getDeclaringClass().getName(), ex);
         }
 
         return null;
     }
 
-    private <T extends SearchResultModifier> Map<String, Class<T>> loadCachedClasses(Class<T> clazz, Class<? extends Annotation> annotationClass) {
-        @SuppressWarnings("unchecked")
-        Map<String, Class<T>> cachedMap = (Map<String, Class<T>>) classCache.get(clazz);
+    private static class ParsedModifierKey {
+
+        private final Class<?> clazz;
+        private final IndexInfo indexInfo;
+        private final Map<String, String> params;
+        private final Object size;
+        private final Object from;
 
-        if (cachedMap == null) {
-            cachedMap = loadClasses(clazz, annotationClass);
-            classCache.put(clazz, cachedMap);
+        ParsedModifierKey(Class<?> clazz, IndexInfo indexInfo, Map<String, String> params, Object size, Object from) {
+            this.clazz = clazz;
+            this.indexInfo = indexInfo;
+            this.params = new HashMap<>(params);
+            this.size = size;
+            this.from = from;
         }
 
-        return cachedMap;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ParsedModifierKey that = (ParsedModifierKey) o;
+            return clazz.equals(that.clazz)
+                    && Objects.equals(indexInfo, that.indexInfo)
+                    && params.equals(that.params)
+                    && Objects.equals(size, that.size)
+                    && Objects.equals(from, that.from);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clazz, indexInfo, params, size, from);
+        }
     }
 
-    private <T> Map<String, Class<T>> loadClasses(Class<T> clazz, Class<? extends Annotation> annotationClass) {
-        Collection<Class<T>> classes = PluginClassLoader.loadClass(clazz, annotationClass).values();
+    private static class ParsedModifier {
+
+        private final SearchResultModifier prototype;
+        private final Object size;
+        private final Object from;
 
-        Map<String, Class<T>> result = new HashMap<>();
+        ParsedModifier(SearchResultModifier prototype, Object size, Object from) {
+            this.prototype = prototype;
+            this.size = size;
+            this.from = from;
+        }
 
-        for (Class<T> cls : classes) {
-            Annotation annotation = cls.getAnnotation(annotationClass);
-            try {
-                Method nameMethod = annotationClass.getDeclaredMethod("name");
-                result.put(((String) nameMethod.invoke(annotation)).toLowerCase(), cls);
-            } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-                throw new RuntimeException(e);
+        void applyTo(Map<String, Object> source) {
+            //the changes parseRequest made to the request
+            if (size != null) {
+                source.put(SIZE, size);
+            }
+            if (from != null) {
+                source.put(FROM, from);
             }
         }
 
-        return result;
+        SearchResultModifier newModifier() {
+            return ((ReusableSearchResultModifier) prototype).copy();
+        }
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.util;
+
+import com.graphaware.es.gas.annotation.SearchBooster;
+import com.graphaware.es.gas.annotation.SearchFilter;
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Boosters and filters listed in the {@value #INDEX_RESOURCE} index of every jar on the plugin class path, resolved
+ * once when the plugin starts. Implementations outside this plugin register by shipping their own index file.
+ */
+public final class ModifierRegistry {
+
+    public static final String INDEX_RESOURCE = "META-INF/graph-aided-search/modifiers";
+
+    private static final ESLogger logger = Loggers.getLogger(ModifierRegistry.class);
+
+    private final Map<Class<? extends Annotation>, Map<String, Constructor<?>>> constructors;
+
+    private ModifierRegistry(Map<Class<? extends Annotation>, Map<String, Constructor<?>>> constructors) {
+        this.constructors = constructors;
+    }
+
+    public static ModifierRegistry load(ClassLoader classLoader) {
+        Map<Class<? extends Annotation>, Map<String, Constructor<?>>> constructors = new HashMap<>();
+        constructors.put(SearchBooster.class, new HashMap<String, Constructor<?>>());
+        constructors.put(SearchFilter.class, new HashMap<String, Constructor<?>>());
+
+        for (String className : readIndex(classLoader)) {
+            Class<?> cls;
+            try {
+                cls = Class.forName(className, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.error("Indexed modifier {} cannot be loaded", e, className);
+                continue;
+            }
+            Constructor<?> constructor = constructor(cls);
+            if (constructor == null) {
+                continue;
+            }
+            SearchBooster booster = cls.getAnnotation(SearchBooster.class);
+            if (booster != null) {
+                register(constructors.get(SearchBooster.class), booster.name(), constructor);
+            }
+            SearchFilter filter = cls.getAnnotation(SearchFilter.class);
+            if (filter != null) {
+                register(constructors.get(SearchFilter.class), filter.name(), constructor);
+            }
+            if (booster == null && filter == null) {
+                logger.warn("Indexed class {} is neither a @SearchBooster nor a @SearchFilter", className);
+            }
+        }
+
+        for (Map.Entry<Class<? extends Annotation>, Map<String, Constructor<?>>> entry : constructors.entrySet()) {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+            logger.debug("Registered {} {} implementations", entry.getValue().size(), entry.getKey().getSimpleName());
+        }
+        return new ModifierRegistry(Collections.unmodifiableMap(constructors));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Constructor<T> get(Class<? extends Annotation> annotationClass, Class<T> type, String name) {
+        Map<String, Constructor<?>> named = constructors.get(annotationClass);
+        Constructor<?> constructor = named != null ? named.get(name.toLowerCase()) : null;
+        if (constructor == null || !type.isAssignableFrom(constructor.getDeclaringClass())) {
+            return null;
+        }
+        return (Constructor<T>) constructor;
+    }
+
+    static List<String> readIndex(ClassLoader classLoader) {
+        Set<String> classNames = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                readIndex(resources.nextElement(), classNames);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read " + INDEX_RESOURCE, e);
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    private static void readIndex(URL url, Set<String> classNames) throws IOException {
+        try (InputStream in = url.openStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!className.isEmpty()) {
+                    classNames.add(className);
+                }
+            }
+        }
+    }
+
+    private static void register(Map<String, Constructor<?>> named, String name, Constructor<?> constructor) {
+        Constructor<?> previous = named.put(name.toLowerCase(), constructor);
+        if (previous != null && !previous.equals(constructor)) {
+            logger.warn("{} is registered by both {} and {}, using the latter", name, previous.getDeclaringClass().getName(), constructor.getDeclaringClass().getName());
+        }
+    }
+
+    private static Constructor<?> constructor(Class<?> cls) {
+        try {
+            return cls.getConstructor(Settings.class, IndexInfo.class);
+        } catch (NoSuchMethodException ex) {
+            logger.warn("No constructor with settings for class {}. Using default", cls.getName());
+        }
+        try {
+            return cls.getConstructor();
+        } catch (NoSuchMethodException ex) {
+            logger.error("No public constructor for class {}", cls.getName());
+            return null;
+        }
+    }
+}
@@ -16,7 +16,9 @@
 
 package com.graphaware.es.gas.util;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public final class ParamUtil {
 
@@ -35,6 +37,28 @@ public final class ParamUtil {
         return value != null ? value : defaultValue;
     }
 
+    /**
+     * Reads an optional JSON object parameter, e.g. the Cypher parameters supplied with a request.
+     */
+    @SuppressWarnings("unchecked")
+    public static HashMap<String, Object> extractMap(String name, Map<String, ?> params) {
+        Object value = params.get(name);
+        if (value == null) {
+            return new HashMap<>();
+        }
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("The " + name + " parameter must be an object");
+        }
+        return new HashMap<>((Map<String, Object>) value);
+    }
+
+    /**
+     * @return a representation of the map that does not depend on its iteration order, for use in cache keys.
+     */
+    public static String toKey(Map<String, ?> map) {
+        return new TreeMap<>(map).toString();
+    }
+
     private ParamUtil() {
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.warmup;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.gateway.GatewayService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Captures the most recent Graph-Aided searches and replays them when the node starts and when an index is opened,
+ * once the primaries of their indices are active, so the graph caches are warm before live traffic hits them.
+ */
+public class SearchWarmer implements ClusterStateListener {
+
+    public static final String WARMUP_ENABLED = "gas.warmup.enabled";
+    public static final String WARMUP_SIZE = "gas.warmup.size";
+
+    private static final int DEFAULT_WARMUP_SIZE = 50;
+
+    private final ESLogger logger;
+    private final Client client;
+    private final Path path;
+    private final Map<String, WarmupTemplate> templates;
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean recovered = false;
+
+    public SearchWarmer(Settings settings, Client client, Path path) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.client = client;
+        this.path = path;
+        final int size = settings.getAsInt(WARMUP_SIZE, DEFAULT_WARMUP_SIZE);
+        this.templates = new LinkedHashMap<String, WarmupTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WarmupTemplate> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    public void record(String[] indices, BytesReference source) {
+        final String json;
+        try {
+            json = XContentHelper.convertToJson(source, true, false);
+        } catch (IOException e) {
+            logger.debug("Unable to capture search source for warm-up", e);
+            return;
+        }
+        WarmupTemplate template = new WarmupTemplate(indices, json);
+        synchronized (templates) {
+            templates.put(template.key(), template);
+        }
+    }
+
+    public List<WarmupTemplate> getTemplates() {
+        synchronized (templates) {
+            return new ArrayList<>(templates.values());
+        }
+    }
+
+    public void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                WarmupTemplate template = WarmupTemplate.parse(line);
+                if (template != null) {
+                    synchronized (templates) {
+                        templates.put(template.key(), template);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read warm-up templates from {}", e, path);
+        }
+    }
+
+    public void save() {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (WarmupTemplate template : getTemplates()) {
+                    writer.write(template.key());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write warm-up templates to {}", e, path);
+        }
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        ClusterState state = event.state();
+        if (state.blocks().hasGlobalBlock(GatewayService.STATE_NOT_RECOVERED_BLOCK)) {
+            return;
+        }
+
+        if (!recovered) {
+            recovered = true;
+            for (WarmupTemplate template : getTemplates()) {
+                Collections.addAll(pending, template.getIndices());
+            }
+        } else {
+            for (IndexMetaData indexMetaData : state.getMetaData()) {
+                IndexMetaData previous = event.previousState().getMetaData().index(indexMetaData.getIndex());
+                if (previous != null && previous.getState() == IndexMetaData.State.CLOSE && indexMetaData.getState() == IndexMetaData.State.OPEN) {
+                    pending.add(indexMetaData.getIndex());
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            replay(state);
+        }
+    }
+
+    void replay(ClusterState state) {
+        for (String index : pending) {
+            if (state.getMetaData().index(index) == null) {
+                pending.remove(index);
+            }
+        }
+
+        List<WarmupTemplate> ready = new ArrayList<>();
+        Set<String> warmed = new HashSet<>();
+        for (WarmupTemplate template : getTemplates()) {
+            if (isPending(template) && isReady(state, template)) {
+                ready.add(template);
+                Collections.addAll(warmed, template.getIndices());
+            }
+        }
+        pending.removeAll(warmed);
+
+        for (final WarmupTemplate template : ready) {
+            client.search(Requests.searchRequest(template.getIndices()).source(template.getSource()), new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Warmed up {} in {}", template, response.getTook());
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("Warm-up failed for {}", e, template);
+                }
+            });
+        }
+    }
+
+    private boolean isPending(WarmupTemplate template) {
+        for (String index : template.getIndices()) {
+            if (pending.contains(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReady(ClusterState state, WarmupTemplate template) {
+        for (String index : template.getIndices()) {
+            IndexMetaData indexMetaData = state.getMetaData().index(index);
+            IndexRoutingTable routingTable = state.getRoutingTable().index(index);
+            if (indexMetaData == null || indexMetaData.getState() != IndexMetaData.State.OPEN || routingTable == null || !routingTable.allPrimaryShardsActive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.warmup;
+
+import java.util.Arrays;
+
+/**
+ * A Graph-Aided search captured from live traffic: the concrete indices it targeted and its source.
+ */
+public class WarmupTemplate {
+
+    private static final String SEPARATOR = "\t";
+
+    private final String[] indices;
+    private final String source;
+
+    public WarmupTemplate(String[] indices, String source) {
+        this.indices = indices;
+        this.source = source;
+    }
+
+    public static WarmupTemplate parse(String line) {
+        int separator = line.indexOf(SEPARATOR);
+        if (separator < 1) {
+            return null;
+        }
+        return new WarmupTemplate(line.substring(0, separator).split(","), line.substring(separator + 1));
+    }
+
+    public String[] getIndices() {
+        return indices;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String key() {
+        StringBuilder key = new StringBuilder();
+        for (String index : indices) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(index);
+        }
+        return key.append(SEPARATOR).append(source).toString();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(indices) + " " + source;
+    }
+}
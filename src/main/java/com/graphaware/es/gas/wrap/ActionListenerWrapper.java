@@ -17,10 +17,38 @@
 package com.graphaware.es.gas.wrap;
 
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.common.xcontent.StatusToXContent;
 
+import java.util.concurrent.Executor;
+
 public interface ActionListenerWrapper<T extends StatusToXContent> {
 
+    /**
+     * @return <code>true</code> if the search has been answered without being executed.
+     */
+    boolean answer(final SearchRequest request, final ActionListener<T> listener);
+
+    /**
+     * @return the executor the search must be wrapped on because wrapping it calls Neo4j, or <code>null</code> if it
+     * can be wrapped on the calling thread.
+     */
+    Executor forkExecutor(final SearchRequest request);
+
+    Executor forkExecutor(final MultiSearchRequest request);
+
     ActionListener<T> wrap(final SearchRequest request, final ActionListener<T> listener) throws CannotWrapException;
+
+    ActionListener<T> wrap(final SearchScrollRequest request, final ActionListener<T> listener) throws CannotWrapException;
+
+    /**
+     * Forgets the cleared Graph-Aided scrolls and replaces their ids with the Elasticsearch ones.
+     */
+    void clear(final ClearScrollRequest request);
+
+    ActionListener<MultiSearchResponse> wrap(final MultiSearchRequest request, final ActionListener<MultiSearchResponse> listener) throws CannotWrapException;
 }
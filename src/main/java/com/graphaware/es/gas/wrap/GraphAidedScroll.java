@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+
+import java.util.List;
+
+/**
+ * Modifiers of a scrolled Graph-Aided Search, kept alive as long as the scroll itself so that every batch is
+ * modified by the same instances (and e.g. a filter set is only computed once per scroll). The state is the encoded
+ * form the modifiers can be rebuilt from on another node.
+ */
+public class GraphAidedScroll {
+
+    static final TimeValue DEFAULT_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+
+    private final List<SearchResultModifier> modifiers;
+    private final IndexInfo indexInfo;
+    private final String state;
+    private volatile long keepAlive;
+    private volatile long expiresAt;
+
+    public GraphAidedScroll(List<SearchResultModifier> modifiers, IndexInfo indexInfo, Scroll scroll, String state) {
+        this.modifiers = modifiers;
+        this.indexInfo = indexInfo;
+        this.state = state;
+        keepAlive(scroll);
+    }
+
+    public List<SearchResultModifier> getModifiers() {
+        return modifiers;
+    }
+
+    public IndexInfo getIndexInfo() {
+        return indexInfo;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public TimeValue getKeepAlive() {
+        return TimeValue.timeValueMillis(keepAlive);
+    }
+
+    public void keepAlive(Scroll scroll) {
+        if (scroll != null && scroll.keepAlive() != null) {
+            keepAlive = scroll.keepAlive().millis();
+        } else if (keepAlive == 0) {
+            keepAlive = DEFAULT_KEEP_ALIVE.millis();
+        }
+        touch();
+    }
+
+    public void touch() {
+        expiresAt = System.currentTimeMillis() + keepAlive;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiresAt;
+    }
+}
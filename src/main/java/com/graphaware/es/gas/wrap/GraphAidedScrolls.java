@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import com.google.common.io.BaseEncoding;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Node-local registry of the Graph-Aided scrolls. The scroll ids returned to the clients also carry the Graph-Aided
+ * clauses of the search, so a scroll continued on another node rebuilds its modifiers instead of losing them.
+ */
+public class GraphAidedScrolls {
+
+    static final String PREFIX = "gas.";
+    private static final char SEPARATOR = '.';
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private final ConcurrentMap<String, GraphAidedScroll> scrolls = new ConcurrentHashMap<>();
+
+    public void register(String scrollId, GraphAidedScroll scroll) {
+        purgeExpired();
+        scroll.touch();
+        scrolls.put(scrollId, scroll);
+    }
+
+    public GraphAidedScroll get(String scrollId) {
+        GraphAidedScroll scroll = scrolls.get(scrollId);
+        if (scroll == null) {
+            return null;
+        }
+        if (scroll.isExpired()) {
+            scrolls.remove(scrollId, scroll);
+            return null;
+        }
+        return scroll;
+    }
+
+    public void clear(String scrollId) {
+        scrolls.remove(scrollId);
+        purgeExpired();
+    }
+
+    public void clearAll() {
+        scrolls.clear();
+    }
+
+    public int size() {
+        return scrolls.size();
+    }
+
+    /**
+     * @return the scroll id returned to the client, made of the encoded state and the Elasticsearch scroll id.
+     */
+    public static String encode(String scrollId, String state) {
+        return PREFIX + state + SEPARATOR + scrollId;
+    }
+
+    /**
+     * @return the encoded state and the Elasticsearch scroll id, <code>null</code> if the scroll is not Graph-Aided.
+     */
+    public static String[] decode(String scrollId) {
+        if (scrollId == null || !scrollId.startsWith(PREFIX)) {
+            return null;
+        }
+        int separator = scrollId.indexOf(SEPARATOR, PREFIX.length());
+        if (separator < 0) {
+            return null;
+        }
+        return new String[]{scrollId.substring(PREFIX.length(), separator), scrollId.substring(separator + 1)};
+    }
+
+    public static String state(Map<String, Object> state) {
+        try {
+            return ENCODING.encode(XContentFactory.jsonBuilder().map(state).bytes().toBytes());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Map<String, Object> state(String state) {
+        final byte[] bytes;
+        try {
+            bytes = ENCODING.decode(state);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed Graph-Aided scroll id", e);
+        }
+        return XContentHelper.convertToMap(new BytesArray(bytes), false).v2();
+    }
+
+    private void purgeExpired() {
+        Iterator<Map.Entry<String, GraphAidedScroll>> iterator = scrolls.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isExpired()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -15,25 +15,37 @@
  */
 package com.graphaware.es.gas.wrap;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.graphaware.es.gas.annotation.SearchBooster;
 import com.graphaware.es.gas.annotation.SearchFilter;
 import com.graphaware.es.gas.booster.SearchResultBooster;
+import com.graphaware.es.gas.booster.SearchResultCypherBooster;
 import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
 import com.graphaware.es.gas.filter.SearchResultFilter;
+import com.graphaware.es.gas.modifier.IndexGroupedSearchResultModifier.IndexGroup;
+import com.graphaware.es.gas.modifier.IndexGroupedSearchResultModifier;
+import com.graphaware.es.gas.modifier.ChainedSearchResultModifier;
+import com.graphaware.es.gas.modifier.FilterSelectivity;
 import com.graphaware.es.gas.modifier.PrivilegedSearchResultModifier;
 import com.graphaware.es.gas.modifier.SearchResultModifier;
+import com.graphaware.es.gas.rescore.GraphScoreCache;
+import com.graphaware.es.gas.rescore.ShardRescore;
 import com.graphaware.es.gas.util.Instantiator;
 import com.graphaware.es.gas.util.NumberUtil;
+import com.graphaware.es.gas.warmup.SearchWarmer;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.ClusterService;
-import org.elasticsearch.cluster.metadata.AliasOrIndex;
-import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.ESLogger;
@@ -41,14 +53,23 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.lookup.SourceLookup;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 
 import static com.graphaware.es.gas.domain.ClauseConstants.*;
 
@@ -61,6 +82,7 @@ public class GraphAidedSearchActionListenerWrapper implements ActionListenerWrap
     public static final String INDEX_GA_ES_NEO4J_PWD = "index.gas.neo4j.password";
     public static final String INDEX_GA_ES_NEO4J_BOLT_HOST = "index.gas.neo4j.boltHostname";
     public static final String INDEX_GA_ES_NEO4J_BOLT_SECURE = "index.gas.neo4j.bolt.secure";
+    public static final String INDEX_GA_ES_TWO_PHASE_FETCH = "index.gas.fetch.twoPhase";
 
     //
     public static final String GAS_REQUEST = "_gas";
@@ -68,49 +90,321 @@ public class GraphAidedSearchActionListenerWrapper implements ActionListenerWrap
     public static final String GAS_FILTER_CLAUSE = "gas-filter";
     //
     public static final int DEFAULT_MAX_RESULT_WINDOW = 10000;
+    //
+    private static final String SCROLL_INDICES = "indices";
+    private static final String ALL_SCROLLS = "_all";
       
     private final ESLogger logger;
     private final Settings settings;
     private final Instantiator instantiator;
 
     private final ClusterService clusterService;
-    private final Cache<String, IndexInfo> scriptInfoCache;
-    //private final Client client;
-
-    public GraphAidedSearchActionListenerWrapper(Settings settings, ClusterService clusterService, Client client) {
+    private final IndexInfos indexInfos;
+    private final GraphAidedScrolls scrolls;
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final IndexNameExpressionResolver indexNameExpressionResolver;
+    private final SearchWarmer warmer;
+    private final FilterSelectivity selectivity = new FilterSelectivity();
+    private final Prefilter prefilter;
+    private final RerankedWindowCache windowCache;
+    private final ResponseCache responseCache;
+    private final GraphScoreCache graphScores;
+    private final int refillRounds;
+
+    public GraphAidedSearchActionListenerWrapper(Settings settings, ClusterService clusterService, Client client, ThreadPool threadPool, IndexNameExpressionResolver indexNameExpressionResolver, IndexInfos indexInfos, SearchWarmer warmer, ResponseCache responseCache) {
         this.logger = Loggers.getLogger(getClass(), settings);
         this.settings = settings;
         this.instantiator = new Instantiator(settings);
 
         this.clusterService = clusterService;
-        //this.client = client;
-        this.scriptInfoCache = CacheBuilder.newBuilder().concurrencyLevel(16).expireAfterAccess(120, TimeUnit.SECONDS).build();
+        this.client = client;
+        this.threadPool = threadPool;
+        this.indexNameExpressionResolver = indexNameExpressionResolver;
+        this.indexInfos = indexInfos;
+        this.warmer = warmer;
+        this.scrolls = new GraphAidedScrolls();
+        this.prefilter = new Prefilter(settings);
+        this.windowCache = new RerankedWindowCache(settings);
+        this.responseCache = responseCache;
+        this.graphScores = new GraphScoreCache(settings);
+        this.refillRounds = settings.getAsInt(Refill.MAX_ROUNDS, 0);
+    }
+
+    @Override
+    public boolean answer(SearchRequest request, ActionListener<SearchResponse> listener) {
+        if (!responseCache.isEnabled() || request.scroll() != null || Boolean.FALSE.equals(request.getHeader(GAS_REQUEST))
+                || !mayHaveGraphAidedClauses(request.source())) {
+            return false;
+        }
+        final SearchResponse cached;
+        try {
+            //only Graph-Aided responses are stored
+            cached = responseCache.get(responseCache.key(request, resolveIndices(request), clusterService.state().getMetaData()));
+        } catch (CannotWrapException e) {
+            return false;
+        }
+        if (cached == null) {
+            return false;
+        }
+        listener.onResponse(cached);
+        return true;
+    }
+
+    @Override
+    public Executor forkExecutor(SearchRequest request) {
+        return isForkRequested(request) ? threadPool.generic() : null;
+    }
+
+    @Override
+    public Executor forkExecutor(MultiSearchRequest request) {
+        for (SearchRequest searchRequest : request.requests()) {
+            if (isForkRequested(searchRequest)) {
+                return threadPool.generic();
+            }
+        }
+        return null;
+    }
+
+    private static boolean mayHaveGraphAidedClauses(BytesReference source) {
+        if (source == null) {
+            return false;
+        }
+        if (XContentFactory.xContentType(source) != XContentType.JSON) {
+            return true;
+        }
+        String json = source.toUtf8();
+        return json.contains('"' + GAS_BOOSTER_CLAUSE + '"') || json.contains('"' + GAS_FILTER_CLAUSE + '"');
+    }
+
+    private static boolean isForkRequested(SearchRequest request) {
+        //the filter set of a prefilter, and the graph scores of a shard rescore, are resolved while the search is wrapped
+        return !Boolean.FALSE.equals(request.getHeader(GAS_REQUEST))
+                && (Prefilter.isRequested(request.source()) || ShardRescore.isRequested(request.source()));
     }
 
     @Override
     public ActionListener<SearchResponse> wrap(SearchRequest request, ActionListener<SearchResponse> listener) throws CannotWrapException {
         checkCorrectType(request);
-        checkScroll(request);
         checkNotAlreadyWrapped(request);
         checkSource(request);
-        checkIndex(request);
+        final String[] indices = resolveIndices(request);
+        if (responseCache.isEnabled() && request.scroll() == null && mayHaveGraphAidedClauses(request.source())) {
+            //keyed by the search as received, before it is rewritten, plain searches are not wrapped and never stored
+            listener = responseCache.store(responseCache.key(request, indices, clusterService.state().getMetaData()), listener);
+        }
 
         final long startTime = System.nanoTime();
 
-        final Map<String, Object> source = SourceLookup.sourceAsMap(request.source());
+        final BytesReference originalSource = request.source();
+        final Map<IndexInfo, List<String>> indexInfos = groupByIndexInfo(indices);
+        final SplicedSearchSource splicedSource = parseSpliced(originalSource, indexInfos, request.scroll() != null);
+        final Map<String, Object> source = splicedSource != null ? splicedSource.getSource() : SourceLookup.sourceAsMap(originalSource);
+        checkGraphAidedClauses(source);
+        final boolean boosted = source.containsKey(GAS_BOOSTER_CLAUSE);
+        final boolean scroll = request.scroll() != null;
+        if (scroll) {
+            //every batch is modified on its own, so there is no window to page through
+            source.remove(FROM);
+        }
 
         warnIfQueryBinary(source);
         final int size = NumberUtil.getInt(source.get(SIZE), 10);
         final int from = NumberUtil.getInt(source.get(FROM), 0);
         checkSizeAndFrom(size, from);
+        final String scrollState = scroll ? scrollState(indices, source, size) : null;
+
+        if (isCountOnly(indexInfos, source, size, scroll)) {
+            return countOnly(request, listener, indices, indexInfos.keySet().iterator().next(), source, splicedSource, originalSource, startTime);
+        }
+
+        if (isShardRescore(indexInfos, source)) {
+            Map<String, Float> scores = graphScores.get(shardBooster(indexInfos.keySet().iterator().next(), source));
+            if (scores == null) {
+                ShardRescore.coordinate(source);
+            } else {
+                ShardRescore.rewrite(source, indices[0], size, from, scores);
+                if (!source.containsKey(GAS_FILTER_CLAUSE)) {
+                    record(indices, originalSource);
+                    request.source(buildBytes(source, splicedSource));
+                    return listener;
+                }
+            }
+        }
+
+        final String windowKey = windowKey(request, indices, indexInfos, source, scroll);
+        if (windowKey != null) {
+            RerankedWindowCache.RerankedWindow window = windowCache.get(windowKey);
+            if (window != null && window.hasPage(from)) {
+                record(indices, originalSource);
+                request.source(buildBytes(window.pageSource(source, from, size, indices)));
+                return new WrappingActionListener(listener, startTime, Collections.singletonList(window.page(from, size)), indexInfos.keySet().iterator().next(), settings);
+            }
+        }
+
+        final IndexInfo scriptInfo;
+        final List<SearchResultModifier> modifiers;
+        boolean refilled = false;
+        if (windowKey != null) {
+            scriptInfo = indexInfos.keySet().iterator().next();
+            modifiers = produceWindowModifiers(scriptInfo, source, windowKey);
+        } else if (indexInfos.size() == 1) {
+            scriptInfo = indexInfos.keySet().iterator().next();
+            //boosters rank the first window only, so only filtered searches are refilled
+            refilled = scriptInfo.isEnabled() && !boosted && !scroll && Refill.isPossible(source, size, refillRounds);
+            if (refilled) {
+                //every window is filtered on its own, the refill pages the survivors
+                modifiers = produceChainedModifier(scriptInfo, source, Collections.<Map<String, Object>>emptyList(), clauses(source, GAS_FILTER_CLAUSE), true, false, true);
+            } else {
+                modifiers = produceModifiers(scriptInfo, source, scriptInfo.isEnabled());
+            }
+        } else {
+            scriptInfo = representative(indexInfos.keySet());
+            modifiers = produceGroupedModifiers(indexInfos, source, size, from);
+        }
+
+        record(indices, originalSource);
+
+        if (modifiers.isEmpty()) {
+            //every filter has been moved into the query
+            if (scroll) {
+                restoreBatchSize(source, size);
+            }
+            request.source(buildBytes(source, splicedSource));
+            return listener;
+        }
 
-        final IndexInfo scriptInfo = getScriptInfo(request.indices()[0]);
+        if (scroll) {
+            restoreBatchSize(source, size);
+            request.source(buildBytes(source, splicedSource));
+            GraphAidedScroll graphAidedScroll = new GraphAidedScroll(modifiers, scriptInfo, request.scroll(), scrollState);
+            return new ScrollingActionListener(listener, request, graphAidedScroll, scrolls, client, startTime, settings);
+        }
+
+        TwoPhaseFetch fetch = null;
+        if (scriptInfo.isEnabled() && scriptInfo.isTwoPhaseFetch()) {
+            fetch = TwoPhaseFetch.prepare(client, request, source);
+        }
 
-        List<SearchResultModifier> modifiers = produceModifiers(scriptInfo, source);
+        Refill refill = null;
+        if (refilled) {
+            refill = Refill.prepare(client, request, source, size, from, maxResultWindow(scriptInfo), refillRounds);
+        }
 
-        request.source(buildBytes(source));
+        request.source(buildBytes(source, splicedSource));
 
-        return createActionListener(request, listener, source, size, from, new WrappingActionListener(listener, startTime, modifiers, scriptInfo, settings));
+        return new WrappingActionListener(listener, startTime, modifiers, scriptInfo, fetch, refill, settings);
+    }
+
+    @Override
+    public ActionListener<MultiSearchResponse> wrap(MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) throws CannotWrapException {
+        checkNotAlreadyWrapped(request);
+
+        List<SearchRequest> requests = request.requests();
+        MultiSearchActionListener multiSearchListener = new MultiSearchActionListener(listener, requests.size(), settings);
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest searchRequest = requests.get(i);
+            if (searchRequest.scroll() != null) {
+                continue;
+            }
+            try {
+                ActionListener<SearchResponse> itemListener = multiSearchListener.item(i);
+                ActionListener<SearchResponse> searchListener = wrap(searchRequest, itemListener);
+                if (searchListener instanceof WrappingActionListener) {
+                    multiSearchListener.wrap(i, (WrappingActionListener) searchListener);
+                } else if (searchListener != itemListener) {
+                    //rewritten only, the response is still stored in the response cache
+                    multiSearchListener.forward(i, searchListener);
+                }
+                //modified together with the other sub-searches once the multi-search returns
+                searchRequest.putHeader(GAS_REQUEST, false);
+            } catch (CannotWrapException e) {
+                //returned as it is
+            }
+        }
+
+        if (multiSearchListener.isEmpty()) {
+            throw new CannotWrapException("No Graph-Aided sub-search");
+        }
+
+        return multiSearchListener;
+    }
+
+    @Override
+    public ActionListener<SearchResponse> wrap(SearchScrollRequest request, ActionListener<SearchResponse> listener) throws CannotWrapException {
+        checkNotAlreadyWrapped(request);
+
+        String[] scrollId = GraphAidedScrolls.decode(request.scrollId());
+        if (scrollId == null) {
+            throw new CannotWrapException("Not a Graph-Aided scroll");
+        }
+        request.scrollId(scrollId[1]);
+        GraphAidedScroll graphAidedScroll = scrolls.get(scrollId[1]);
+        if (graphAidedScroll == null) {
+            //started on another node, or expired on this one
+            graphAidedScroll = restoreScroll(scrollId[0], request.scroll());
+        }
+        graphAidedScroll.keepAlive(request.scroll());
+
+        return new ScrollingActionListener(listener, request, graphAidedScroll, scrolls, client, System.nanoTime(), settings);
+    }
+
+    @Override
+    public void clear(ClearScrollRequest request) {
+        if (request.getScrollIds() == null) {
+            return;
+        }
+        List<String> scrollIds = new ArrayList<>();
+        for (String scrollId : request.getScrollIds()) {
+            if (ALL_SCROLLS.equals(scrollId)) {
+                scrolls.clearAll();
+                scrollIds.add(scrollId);
+                continue;
+            }
+            String[] decoded = GraphAidedScrolls.decode(scrollId);
+            String searchScrollId = decoded != null ? decoded[1] : scrollId;
+            scrolls.clear(searchScrollId);
+            scrollIds.add(searchScrollId);
+        }
+        request.setScrollIds(scrollIds);
+    }
+
+    private static String scrollState(String[] indices, Map<String, Object> source, int size) {
+        Map<String, Object> state = new HashMap<>();
+        state.put(SCROLL_INDICES, Arrays.asList(indices));
+        state.put(SIZE, size);
+        for (String clause : Arrays.asList(GAS_BOOSTER_CLAUSE, GAS_FILTER_CLAUSE)) {
+            if (source.containsKey(clause)) {
+                state.put(clause, source.get(clause));
+            }
+        }
+        return GraphAidedScrolls.state(state);
+    }
+
+    private GraphAidedScroll restoreScroll(String state, Scroll scroll) {
+        Map<String, Object> source = GraphAidedScrolls.state(state);
+        List<?> indices = (List<?>) source.remove(SCROLL_INDICES);
+        if (indices == null || indices.isEmpty()) {
+            throw new IllegalArgumentException("Malformed Graph-Aided scroll id");
+        }
+        Map<IndexInfo, List<String>> indexInfos = groupByIndexInfo(indices.toArray(new String[indices.size()]));
+        try {
+            //the query of the scroll can't change anymore, so the filters are applied to the hits
+            if (indexInfos.size() == 1) {
+                IndexInfo scriptInfo = indexInfos.keySet().iterator().next();
+                return new GraphAidedScroll(produceModifiers(scriptInfo, source, false), scriptInfo, scroll, state);
+            }
+            int size = NumberUtil.getInt(source.get(SIZE), 10);
+            return new GraphAidedScroll(produceGroupedModifiers(indexInfos, source, size, 0), representative(indexInfos.keySet()), scroll, state);
+        } catch (CannotWrapException e) {
+            throw new IllegalStateException("Unable to continue the Graph-Aided scroll: " + e.getMessage());
+        }
+    }
+
+    private void record(String[] indices, BytesReference originalSource) {
+        if (warmer != null && originalSource != null) {
+            warmer.record(indices, originalSource);
+        }
     }
 
     private void checkCorrectType(SearchRequest request) throws CannotWrapException {
@@ -124,13 +418,67 @@ public class GraphAidedSearchActionListenerWrapper implements ActionListenerWrap
         }
     }
 
-    private void checkScroll(SearchRequest request) throws CannotWrapException {
-        if (request.scroll() != null) {
-            throw new CannotWrapException("Has scroll");
+    private boolean isShardRescore(Map<IndexInfo, List<String>> indexInfos, Map<String, Object> source) {
+        //indices with different Neo4j settings are boosted on the coordinating node
+        return indexInfos.size() == 1 && indexInfos.keySet().iterator().next().isEnabled() && ShardRescore.isRequested(source);
+    }
+
+    private SearchResultCypherBooster shardBooster(IndexInfo scriptInfo, Map<String, Object> source) {
+        Map<String, Object> boosterSource = new HashMap<>();
+        boosterSource.put(GAS_BOOSTER_CLAUSE, ShardRescore.booster(source));
+        SearchResultCypherBooster booster = new SearchResultCypherBooster(settings, scriptInfo);
+        booster.parseRequest(boosterSource);
+        return booster;
+    }
+
+    private boolean isCountOnly(Map<IndexInfo, List<String>> indexInfos, Map<String, Object> source, int size, boolean scroll) {
+        return size == 0 && !scroll && indexInfos.size() == 1 && indexInfos.keySet().iterator().next().isEnabled();
+    }
+
+    private ActionListener<SearchResponse> countOnly(SearchRequest request, ActionListener<SearchResponse> listener, String[] indices, IndexInfo scriptInfo, Map<String, Object> source, SplicedSearchSource splicedSource, BytesReference originalSource, long startTime) throws CannotWrapException {
+        //boosting reorders hits, it can't change how many of them match
+        source.remove(GAS_BOOSTER_CLAUSE);
+        List<SearchResultModifier> modifiers = Collections.emptyList();
+        if (source.containsKey(GAS_FILTER_CLAUSE)) {
+            for (Map<String, Object> clause : clauses(source, GAS_FILTER_CLAUSE)) {
+                clause.put(PREFILTER, true);
+                //probing filters can't be prefiltered, they must not stop at the empty page
+                clause.put(EXACT_TOTAL, true);
+            }
+            modifiers = produceModifiers(scriptInfo, source, true, true);
+        }
+
+        record(indices, originalSource);
+
+        if (modifiers.isEmpty()) {
+            request.source(buildBytes(source, splicedSource));
+            return listener;
+        }
+
+        //a probing or custom filter with a set too large for the query, the hits of the window are only counted
+        TwoPhaseFetch.removeFetchElements(source);
+        request.source(buildBytes(source, splicedSource));
+        return new WrappingActionListener(listener, startTime, modifiers, scriptInfo, settings);
+    }
+
+    private static int maxResultWindow(IndexInfo indexInfo) {
+        return indexInfo.getMaxResultWindow() > 0 ? indexInfo.getMaxResultWindow() : DEFAULT_MAX_RESULT_WINDOW;
+    }
+
+    private String windowKey(SearchRequest request, String[] indices, Map<IndexInfo, List<String>> indexInfos, Map<String, Object> source, boolean scroll) {
+        if (!windowCache.isEnabled() || scroll || indexInfos.size() != 1 || !indexInfos.keySet().iterator().next().isEnabled()
+                || !RerankedWindowCache.isCacheable(source)) {
+            return null;
         }
+        return windowCache.key(request, indices, clusterService.state().getMetaData(), source);
     }
 
-    private void checkNotAlreadyWrapped(SearchRequest request) throws CannotWrapException {
+    private void restoreBatchSize(Map<String, Object> source, int size) {
+        source.put(SIZE, size);
+        source.remove(FROM);
+    }
+
+    private void checkNotAlreadyWrapped(ActionRequest request) throws CannotWrapException {
         //Necessary to avoid infinite loop
         if (Boolean.FALSE.equals(request.getHeader(GAS_REQUEST))) {
             throw new CannotWrapException("Already wrapped");
@@ -147,11 +495,39 @@ public class GraphAidedSearchActionListenerWrapper implements ActionListenerWrap
         }
     }
 
-    private void checkIndex(SearchRequest request) throws CannotWrapException {
-        final String[] indices = request.indices();
-        if (indices == null || indices.length != 1) {
-            throw new CannotWrapException("Does not have a single index");
+    private String[] resolveIndices(SearchRequest request) throws CannotWrapException {
+        final String[] indices;
+        try {
+            indices = indexNameExpressionResolver.concreteIndices(clusterService.state(), request);
+        } catch (ElasticsearchException e) {
+            throw new CannotWrapException("Unable to resolve indices: " + e.getMessage());
         }
+        if (indices.length == 0) {
+            throw new CannotWrapException("No index");
+        }
+        return indices;
+    }
+
+    private Map<IndexInfo, List<String>> groupByIndexInfo(String[] indices) {
+        final MetaData metaData = clusterService.state().getMetaData();
+        Map<IndexInfo, List<String>> indexInfos = new LinkedHashMap<>();
+        for (String index : indices) {
+            IndexInfo indexInfo = this.indexInfos.get(index, metaData);
+            if (!indexInfos.containsKey(indexInfo)) {
+                indexInfos.put(indexInfo, new ArrayList<String>());
+            }
+            indexInfos.get(indexInfo).add(index);
+        }
+        return indexInfos;
+    }
+
+    private IndexInfo representative(Collection<IndexInfo> indexInfos) {
+        for (IndexInfo indexInfo : indexInfos) {
+            if (indexInfo.isEnabled()) {
+                return indexInfo;
+            }
+        }
+        return indexInfos.iterator().next();
     }
 
     private void warnIfQueryBinary(Map<String, Object> sourceAsMap) {
@@ -167,89 +543,255 @@ public class GraphAidedSearchActionListenerWrapper implements ActionListenerWrap
         }
     }
 
-    private List<SearchResultModifier> produceModifiers(IndexInfo scriptInfo, Map<String, Object> source) throws CannotWrapException {
+    private List<SearchResultModifier> produceModifiers(IndexInfo scriptInfo, Map<String, Object> source, boolean prefilterable) throws CannotWrapException {
+        return produceModifiers(scriptInfo, source, prefilterable, false);
+    }
+
+    private List<SearchResultModifier> produceModifiers(IndexInfo scriptInfo, Map<String, Object> source, boolean prefilterable, boolean countOnly) throws CannotWrapException {
+        List<Map<String, Object>> boosterClauses = clauses(source, GAS_BOOSTER_CLAUSE);
+        List<Map<String, Object>> filterClauses = clauses(source, GAS_FILTER_CLAUSE);
+        if (boosterClauses.size() + filterClauses.size() > 1) {
+            return produceChainedModifier(scriptInfo, source, boosterClauses, filterClauses, prefilterable, countOnly, false);
+        }
+
         List<SearchResultModifier> modifiers = new LinkedList<>();
+        boolean prefiltered = false;
 
         SearchResultBooster booster = instantiator.instantiate(GAS_BOOSTER_CLAUSE, source, scriptInfo, SearchResultBooster.class, SearchBooster.class);
         if (booster != null) {
             modifiers.add(new PrivilegedSearchResultModifier(booster));
         }
 
+        Object size = source.get(SIZE);
+        Object from = source.get(FROM);
         SearchResultFilter filter = instantiator.instantiate(GAS_FILTER_CLAUSE, source, scriptInfo, SearchResultFilter.class, SearchFilter.class);
-        if (filter != null) {
+        if (filter != null && prefilterable && prefilter(filter, source, countOnly)) {
+            //the query only returns the hits the filter keeps, no need for a larger window
+            restore(source, SIZE, size);
+            restore(source, FROM, from);
+            prefiltered = true;
+        } else if (filter != null) {
             modifiers.add(new PrivilegedSearchResultModifier(filter));
         }
 
-        if (modifiers.isEmpty()) {
+        if (modifiers.isEmpty() && !prefiltered) {
             throw new CannotWrapException("No modifiers");
         }
 
         return modifiers;
     }
 
-    private BytesReference buildBytes(Map<String, Object> source) {
-        final XContentBuilder builder;
+    private List<SearchResultModifier> produceWindowModifiers(IndexInfo scriptInfo, Map<String, Object> source, String windowKey) throws CannotWrapException {
+        int size = NumberUtil.getInt(source.get(SIZE), 10);
+        int from = NumberUtil.getInt(source.get(FROM), 0);
+        //the whole reranked window is kept, whatever the number of clauses
+        List<SearchResultModifier> window = produceChainedModifier(scriptInfo, source, clauses(source, GAS_BOOSTER_CLAUSE), clauses(source, GAS_FILTER_CLAUSE), false, false, true);
+        return Collections.singletonList(windowCache.store(window.get(0), windowKey, size, from));
+    }
 
-        try {
-            builder = XContentFactory.contentBuilder(Requests.CONTENT_TYPE);
-            builder.map(source);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private List<SearchResultModifier> produceChainedModifier(IndexInfo scriptInfo, Map<String, Object> source, List<Map<String, Object>> boosterClauses, List<Map<String, Object>> filterClauses, boolean prefilterable, boolean countOnly, boolean unpaged) throws CannotWrapException {
+        int size = NumberUtil.getInt(source.get(SIZE), 10);
+        int from = NumberUtil.getInt(source.get(FROM), 0);
+        source.remove(GAS_BOOSTER_CLAUSE);
+        source.remove(GAS_FILTER_CLAUSE);
+
+        //every modifier parses its own clause without paging, the window is the largest one they ask for
+        int[] windowSize = {from + size};
+        List<SearchResultModifier> boosters = new ArrayList<>();
+        for (Map<String, Object> clause : boosterClauses) {
+            SearchResultBooster booster = instantiateChained(GAS_BOOSTER_CLAUSE, clause, source, scriptInfo, SearchResultBooster.class, SearchBooster.class, windowSize);
+            if (booster != null) {
+                boosters.add(new PrivilegedSearchResultModifier(booster));
+            }
+        }
+        List<SearchResultModifier> filters = new ArrayList<>();
+        int prefiltered = 0;
+        for (Map<String, Object> clause : filterClauses) {
+            int window = windowSize[0];
+            SearchResultFilter filter = instantiateChained(GAS_FILTER_CLAUSE, clause, source, scriptInfo, SearchResultFilter.class, SearchFilter.class, windowSize);
+            if (filter != null && prefilterable && prefilter(filter, source, countOnly)) {
+                windowSize[0] = window;
+                prefiltered++;
+            } else if (filter != null) {
+                filters.add(new PrivilegedSearchResultModifier(filter));
+            }
         }
 
-        return builder.bytes();
+        if (boosters.isEmpty() && filters.isEmpty()) {
+            if (prefiltered > 0) {
+                source.put(SIZE, size);
+                source.put(FROM, from);
+                return Collections.emptyList();
+            }
+            throw new CannotWrapException("No modifiers");
+        }
+
+        source.put(SIZE, windowSize[0]);
+        source.put(FROM, 0);
+        if (unpaged) {
+            return Collections.<SearchResultModifier>singletonList(new ChainedSearchResultModifier(filters, boosters, selectivity, threadPool.generic(), windowSize[0], 0));
+        }
+        return Collections.<SearchResultModifier>singletonList(new ChainedSearchResultModifier(filters, boosters, selectivity, threadPool.generic(), size, from));
+    }
+
+    private static void restore(Map<String, Object> source, String key, Object value) {
+        if (value == null) {
+            source.remove(key);
+        } else {
+            source.put(key, value);
+        }
+    }
+
+    private boolean prefilter(SearchResultFilter filter, Map<String, Object> source, boolean countOnly) {
+        //only the count is returned, a set too large for the query is better filtered on the shards than in a window
+        return filter instanceof SearchResultCypherFilter && prefilter.inject((SearchResultCypherFilter) filter, source, countOnly);
+    }
+
+    private <T extends SearchResultModifier> T instantiateChained(String clauseName, Map<String, Object> clause, Map<String, Object> source, IndexInfo scriptInfo, Class<T> clazz, Class<? extends Annotation> annotationClass, int[] windowSize) {
+        Map<String, Object> clauseSource = new HashMap<>(source);
+        clauseSource.put(clauseName, clause);
+        clauseSource.put(SIZE, ChainedSearchResultModifier.UNBOUNDED);
+        clauseSource.put(FROM, 0);
+        T modifier = instantiator.instantiate(clauseName, clauseSource, scriptInfo, clazz, annotationClass);
+        int requested = NumberUtil.getInt(clauseSource.get(SIZE), ChainedSearchResultModifier.UNBOUNDED);
+        if (requested != ChainedSearchResultModifier.UNBOUNDED) {
+            windowSize[0] = Math.max(windowSize[0], requested);
+        }
+        return modifier;
     }
 
-    private ActionListener<SearchResponse> createActionListener(final SearchRequest request, final ActionListener<SearchResponse> listener, final Map<String, Object> source, final int size, final int from, final ActionListener<SearchResponse> searchResponseListener) {
-        return new ActionListener<SearchResponse>() {
-            @Override
-            public void onResponse(SearchResponse response) {
-                searchResponseListener.onResponse(response);
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> clauses(Map<String, Object> source, String clauseName) {
+        Object clause = source.get(clauseName);
+        if (clause == null) {
+            return Collections.emptyList();
+        }
+        if (clause instanceof Map) {
+            return Collections.singletonList((Map<String, Object>) clause);
+        }
+        if (clause instanceof List) {
+            List<Map<String, Object>> clauses = new ArrayList<>();
+            for (Object element : (List<?>) clause) {
+                if (!(element instanceof Map)) {
+                    throw new IllegalArgumentException("The elements of " + clauseName + " must be objects");
+                }
+                clauses.add((Map<String, Object>) element);
             }
+            return clauses;
+        }
+        throw new IllegalArgumentException(clauseName + " must be an object or a list of objects");
+    }
 
-            @Override
-            public void onFailure(Throwable t) {
-                searchResponseListener.onFailure(t);
+    private List<SearchResultModifier> produceGroupedModifiers(Map<IndexInfo, List<String>> indexInfos, Map<String, Object> source, int size, int from) throws CannotWrapException {
+        List<IndexGroup> groups = new ArrayList<>();
+        int windowSize = from + size;
+        boolean enabled = false;
+
+        for (Map.Entry<IndexInfo, List<String>> entry : indexInfos.entrySet()) {
+            List<SearchResultModifier> groupModifiers = Collections.emptyList();
+            if (entry.getKey().isEnabled()) {
+                //every group returns its own top from + size hits, the page is cut after merging
+                Map<String, Object> groupSource = new HashMap<>(source);
+                groupSource.put(SIZE, from + size);
+                groupSource.put(FROM, 0);
+                //the query is shared by the groups, so their filters can't be moved into it
+                groupModifiers = produceModifiers(entry.getKey(), groupSource, false);
+                windowSize = Math.max(windowSize, NumberUtil.getInt(groupSource.get(SIZE), windowSize));
+                enabled = true;
             }
-        };
+            groups.add(new IndexGroup(entry.getKey(), entry.getValue(), groupModifiers));
+        }
+
+        source.remove(GAS_BOOSTER_CLAUSE);
+        source.remove(GAS_FILTER_CLAUSE);
+        if (enabled) {
+            source.put(SIZE, windowSize);
+            source.put(FROM, 0);
+        }
+
+        return Collections.<SearchResultModifier>singletonList(new IndexGroupedSearchResultModifier(groups, threadPool.generic(), size, from));
     }
 
-    private IndexInfo getScriptInfo(final String index) {
+    private SplicedSearchSource parseSpliced(BytesReference source, Map<IndexInfo, List<String>> indexInfos, boolean scroll) {
+        if (source == null) {
+            return null;
+        }
+        for (IndexInfo indexInfo : indexInfos.keySet()) {
+            if (indexInfo.isEnabled() && indexInfo.isTwoPhaseFetch()) {
+                //the fetch elements are moved to the second phase
+                return null;
+            }
+        }
         try {
-            return scriptInfoCache.get(index, new Callable<IndexInfo>() {
-                @Override
-                public IndexInfo call() throws Exception {
-                    final MetaData metaData = clusterService.state().getMetaData();
-                    AliasOrIndex aliasOrIndex = metaData.getAliasAndIndexLookup().get(index);
-                    if (aliasOrIndex == null) {
-                        return IndexInfo.NO_SCRIPT_INFO;
-                    }
-                    Settings indexSettings = null;
-                    for (IndexMetaData indexMD : aliasOrIndex.getIndices()) {
-                        final Settings scriptSettings = indexMD.getSettings();
-                        final String script = scriptSettings.get(INDEX_GA_ES_NEO4J_HOST);
-                        if (script != null && script.length() > 0) {
-                            indexSettings = scriptSettings;
-                        }
-                    }
-
-                    if (indexSettings == null) {
-                        return IndexInfo.NO_SCRIPT_INFO;
-                    }
-
-                    return new IndexInfo(indexSettings.get(INDEX_GA_ES_NEO4J_HOST),
-                            indexSettings.get(INDEX_GA_ES_NEO4J_BOLT_HOST),
-                            indexSettings.get(INDEX_GA_ES_NEO4J_USER),
-                            indexSettings.get(INDEX_GA_ES_NEO4J_PWD),
-                            indexSettings.getAsBoolean(INDEX_GA_ES_NEO4J_ENABLED, false),
-                            indexSettings.getAsInt(INDEX_MAX_RESULT_WINDOW,
-                                    DEFAULT_MAX_RESULT_WINDOW),
-                            indexSettings.getAsBoolean(INDEX_GA_ES_NEO4J_BOLT_SECURE, true));
-                }
-            });
-        } catch (final Exception e) {
-            logger.warn("Failed to load ScriptInfo for {}.", e, index);
+            SplicedSearchSource splicedSource = SplicedSearchSource.parse(source);
+            if (splicedSource != null && (ShardRescore.isRequested(splicedSource.getSource()) || Prefilter.isRequested(splicedSource.getSource())
+                    || isCountOnlyFilter(splicedSource.getSource()) || isWindowedOrRefilled(splicedSource, indexInfos, scroll))) {
+                //the query is copied into the rescore, or rewritten with the filter set
+                return null;
+            }
+            return splicedSource;
+        } catch (IOException e) {
+            logger.debug("Unable to splice search source, decoding it", e);
             return null;
         }
     }
+
+    private boolean isWindowedOrRefilled(SplicedSearchSource splicedSource, Map<IndexInfo, List<String>> indexInfos, boolean scroll) {
+        //the page of a cached window, or the next windows of a refill, are fetched with the decoded query
+        if (scroll || indexInfos.size() != 1 || !indexInfos.keySet().iterator().next().isEnabled()) {
+            return false;
+        }
+        Map<String, Object> source = splicedSource.getSource();
+        if (windowCache.isEnabled() && RerankedWindowCache.isCacheable(splicedSource)) {
+            return true;
+        }
+        return !source.containsKey(GAS_BOOSTER_CLAUSE) && !splicedSource.has(RESCORE)
+                && Refill.isPossible(source, NumberUtil.getInt(source.get(SIZE), 10), refillRounds);
+    }
+
+    private static boolean isCountOnlyFilter(Map<String, Object> source) {
+        return source.containsKey(GAS_FILTER_CLAUSE) && NumberUtil.getInt(source.get(SIZE), 10) == 0;
+    }
+
+    private void checkGraphAidedClauses(Map<String, Object> source) throws CannotWrapException {
+        if (!source.containsKey(GAS_BOOSTER_CLAUSE) && !source.containsKey(GAS_FILTER_CLAUSE)) {
+            throw new CannotWrapException("No Graph-Aided clause");
+        }
+    }
+
+    private BytesReference buildBytes(Map<String, Object> source, SplicedSearchSource splicedSource) {
+        if (splicedSource == null) {
+            return buildBytes(source);
+        }
+        try {
+            return splicedSource.build();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private BytesReference buildBytes(Map<String, Object> source) {
+        final XContentBuilder builder;
+
+        try {
+            builder = XContentFactory.contentBuilder(Requests.CONTENT_TYPE);
+            builder.map(source);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.bytes();
+    }
+
+    public static IndexInfo createIndexInfo(Settings indexSettings) {
+        return new IndexInfo(indexSettings.get(INDEX_GA_ES_NEO4J_HOST),
+                indexSettings.get(INDEX_GA_ES_NEO4J_BOLT_HOST),
+                indexSettings.get(INDEX_GA_ES_NEO4J_USER),
+                indexSettings.get(INDEX_GA_ES_NEO4J_PWD),
+                indexSettings.getAsBoolean(INDEX_GA_ES_NEO4J_ENABLED, false),
+                indexSettings.getAsInt(INDEX_MAX_RESULT_WINDOW,
+                        DEFAULT_MAX_RESULT_WINDOW),
+                indexSettings.getAsBoolean(INDEX_GA_ES_NEO4J_BOLT_SECURE, true),
+                indexSettings.getAsBoolean(INDEX_GA_ES_TWO_PHASE_FETCH, false));
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.AliasOrIndex;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.INDEX_GA_ES_NEO4J_HOST;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.createIndexInfo;
+
+/**
+ * The {@link IndexInfo} of every index and alias, rebuilt only when the cluster metadata changes so that lookups are a
+ * plain read of an immutable map and settings updates apply as soon as the cluster state does.
+ */
+public class IndexInfos implements ClusterStateListener {
+
+    private volatile Snapshot snapshot = new Snapshot(-1, Collections.<String, IndexInfo>emptyMap());
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged() || snapshot.version < 0) {
+            update(event.state().getMetaData());
+        }
+    }
+
+    public void update(MetaData metaData) {
+        snapshot = new Snapshot(metaData.version(), build(metaData));
+    }
+
+    /**
+     * Returns the configuration for the given index or alias, looking it up in the given metadata when it is newer than
+     * the last one seen by the listener, e.g. for an index created while the listeners are being notified.
+     */
+    public IndexInfo get(String index, MetaData metaData) {
+        Snapshot current = snapshot;
+        IndexInfo indexInfo = current.indexInfos.get(index);
+        if (indexInfo != null || metaData.version() == current.version) {
+            return indexInfo != null ? indexInfo : IndexInfo.NO_SCRIPT_INFO;
+        }
+        return build(metaData.getAliasAndIndexLookup().get(index));
+    }
+
+    static Map<String, IndexInfo> build(MetaData metaData) {
+        Map<String, IndexInfo> indexInfos = new HashMap<>();
+        Map<Settings, IndexInfo> bySettings = new HashMap<>();
+        for (Map.Entry<String, AliasOrIndex> entry : metaData.getAliasAndIndexLookup().entrySet()) {
+            Settings settings = graphSettings(entry.getValue());
+            if (settings == null) {
+                continue;
+            }
+            //indices and aliases sharing settings share the instance
+            IndexInfo indexInfo = bySettings.get(settings);
+            if (indexInfo == null) {
+                indexInfo = createIndexInfo(settings);
+                bySettings.put(settings, indexInfo);
+            }
+            indexInfos.put(entry.getKey(), indexInfo);
+        }
+        return Collections.unmodifiableMap(indexInfos);
+    }
+
+    private static IndexInfo build(AliasOrIndex aliasOrIndex) {
+        Settings settings = aliasOrIndex != null ? graphSettings(aliasOrIndex) : null;
+        return settings != null ? createIndexInfo(settings) : IndexInfo.NO_SCRIPT_INFO;
+    }
+
+    private static Settings graphSettings(AliasOrIndex aliasOrIndex) {
+        Settings indexSettings = null;
+        for (IndexMetaData indexMetaData : aliasOrIndex.getIndices()) {
+            final Settings settings = indexMetaData.getSettings();
+            final String host = settings.get(INDEX_GA_ES_NEO4J_HOST);
+            if (host != null && host.length() > 0) {
+                indexSettings = settings;
+            }
+        }
+        return indexSettings;
+    }
+
+    private static class Snapshot {
+
+        private final long version;
+        private final Map<String, IndexInfo> indexInfos;
+
+        Snapshot(long version, Map<String, IndexInfo> indexInfos) {
+            this.version = version;
+            this.indexInfos = indexInfos;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.modifier.SearchResultModifierBatcher;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the modifiers of every Graph-Aided sub-search of a multi-search, sharing the remote lookups of sub-searches
+ * which query the same endpoint with the same query.
+ */
+public class MultiSearchActionListener implements ActionListener<MultiSearchResponse> {
+
+    private final ESLogger logger;
+    private final ActionListener<MultiSearchResponse> wrapped;
+    private final Settings settings;
+    private final WrappingActionListener[] listeners;
+    private final ActionListener<SearchResponse>[] forwards;
+    private final MultiSearchResponse.Item[] items;
+    private final AtomicInteger pending;
+
+    @SuppressWarnings("unchecked")
+    public MultiSearchActionListener(ActionListener<MultiSearchResponse> wrapped, int size, Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.wrapped = wrapped;
+        this.settings = settings;
+        this.listeners = new WrappingActionListener[size];
+        this.forwards = new ActionListener[size];
+        this.items = new MultiSearchResponse.Item[size];
+        this.pending = new AtomicInteger(size);
+    }
+
+    public ActionListener<SearchResponse> item(final int index) {
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                complete(index, new MultiSearchResponse.Item(response, null));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                complete(index, new MultiSearchResponse.Item(null, e));
+            }
+        };
+    }
+
+    public void wrap(int index, WrappingActionListener listener) {
+        listeners[index] = listener;
+    }
+
+    /**
+     * Passes the unmodified response of a sub-search through the listener its wrapping returned.
+     */
+    public void forward(int index, ActionListener<SearchResponse> listener) {
+        forwards[index] = listener;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != null || forwards[i] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onResponse(MultiSearchResponse response) {
+        MultiSearchResponse.Item[] responses = response.getResponses();
+
+        SearchResultModifierBatcher batcher = new SearchResultModifierBatcher(settings);
+        for (int i = 0; i < responses.length; i++) {
+            if (isModified(i, responses[i])) {
+                batcher.add(listeners[i].getModifiers(), (InternalSearchHits) responses[i].getResponse().getHits());
+            }
+        }
+        int lookups = batcher.execute();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executed {} batched lookups for {} searches", lookups, responses.length);
+        }
+
+        for (int i = 0; i < responses.length; i++) {
+            if (forwards[i] != null && !responses[i].isFailure()) {
+                forwards[i].onResponse(responses[i].getResponse());
+                continue;
+            }
+            if (listeners[i] == null || responses[i].isFailure()) {
+                complete(i, responses[i]);
+                continue;
+            }
+            try {
+                listeners[i].onResponse(responses[i].getResponse());
+            } catch (RuntimeException e) {
+                item(i).onFailure(e);
+            }
+        }
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+        wrapped.onFailure(e);
+    }
+
+    private boolean isModified(int index, MultiSearchResponse.Item item) {
+        return listeners[index] != null
+                && !item.isFailure()
+                && listeners[index].getIndexInfo().isEnabled()
+                && item.getResponse().getHits().getTotalHits() > 0;
+    }
+
+    private void complete(int index, MultiSearchResponse.Item item) {
+        items[index] = item;
+        if (pending.decrementAndGet() == 0) {
+            wrapped.onResponse(new MultiSearchResponse(items));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import com.graphaware.es.gas.query.GraphFilterQueryParser;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.lookup.SourceLookup;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
+
+/**
+ * Resolves the set of a filter asking for it before the search is executed and, when the set is small enough, adds it
+ * to the query as an <code>ids</code> clause, so that the shards never score, count, aggregate or fetch the documents
+ * the filter would remove.
+ */
+public class Prefilter {
+
+    public static final String MAX_TERMS = "gas.prefilter.max_terms";
+    public static final String CACHE_EXPIRE = "gas.prefilter.cache.expire";
+
+    private static final int DEFAULT_MAX_TERMS = 10000;
+
+    private final ESLogger logger;
+    private final int maxTerms;
+    private final Cache<String, Set<String>> filterSets;
+
+    public Prefilter(Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.maxTerms = settings.getAsInt(MAX_TERMS, DEFAULT_MAX_TERMS);
+        TimeValue expire = settings.getAsTime(CACHE_EXPIRE, TimeValue.timeValueSeconds(30));
+        this.filterSets = expire.millis() > 0 ? CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .<String, Set<String>>build() : null;
+    }
+
+    /**
+     * @return whether a filter of the source asks to be moved into the query.
+     */
+    public static boolean isRequested(Map<String, Object> source) {
+        Object clause = source.get(GAS_FILTER_CLAUSE);
+        if (clause instanceof List) {
+            for (Object element : (List<?>) clause) {
+                if (isRequested(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return isRequested(clause);
+    }
+
+    /**
+     * @return whether a filter of the source may ask to be moved into the query, a JSON source is not decoded for it.
+     */
+    public static boolean isRequested(BytesReference source) {
+        if (source == null) {
+            return false;
+        }
+        if (XContentFactory.xContentType(source) == XContentType.JSON) {
+            return source.toUtf8().contains('"' + PREFILTER + '"');
+        }
+        try {
+            return isRequested(SourceLookup.sourceAsMap(source));
+        } catch (RuntimeException e) {
+            //left to the search to report
+            return false;
+        }
+    }
+
+    private static boolean isRequested(Object clause) {
+        return clause instanceof Map && TRUE.equalsIgnoreCase(String.valueOf(((Map<?, ?>) clause).get(PREFILTER)));
+    }
+
+    /**
+     * @return <code>true</code> if the filter has been moved into the query of the source and must not be applied to
+     * the hits anymore.
+     */
+    public boolean inject(SearchResultCypherFilter filter, Map<String, Object> source) {
+        return inject(filter, source, false);
+    }
+
+    /**
+     * @param shardFallback whether a set too large for an <code>ids</code> clause is moved into the query as a
+     *                      <code>graph_filter</code> query, resolved again on every node, when the filter supports it.
+     * @return <code>true</code> if the filter has been moved into the query of the source and must not be applied to
+     * the hits anymore.
+     */
+    public boolean inject(SearchResultCypherFilter filter, Map<String, Object> source, boolean shardFallback) {
+        if (!filter.isPrefilter() || source.get(QUERY_BINARY) != null) {
+            return false;
+        }
+        Set<String> ids = resolve(filter);
+        if (ids.size() > maxTerms) {
+            Map<String, Object> graphFilter = shardFallback ? filter.getGraphFilterClause() : null;
+            if (graphFilter != null) {
+                addFilterClause(source, Collections.<String, Object>singletonMap(GraphFilterQueryParser.NAME, graphFilter), FILTER);
+                return true;
+            }
+            //too large for the query, the set is still reused to filter the hits
+            filter.setFetched(ids);
+            return false;
+        }
+        addIdsClause(source, ids, filter.isExclude());
+        return true;
+    }
+
+    static void addIdsClause(Map<String, Object> source, Set<String> ids, boolean exclude) {
+        addFilterClause(source, Collections.<String, Object>singletonMap(IDS, Collections.singletonMap(VALUES, new ArrayList<>(ids))), exclude ? MUST_NOT : FILTER);
+    }
+
+    private static void addFilterClause(Map<String, Object> source, Map<String, Object> clause, String occur) {
+        Object query = source.get(QUERY);
+        Map<String, Object> bool = new HashMap<>();
+        bool.put(MUST, query instanceof Map ? query : Collections.singletonMap(MATCH_ALL, Collections.emptyMap()));
+        bool.put(occur, clause);
+        source.put(QUERY, Collections.singletonMap(BOOL, bool));
+    }
+
+    private Set<String> resolve(final SearchResultCypherFilter filter) {
+        String key = filter.getBatchKey();
+        if (!filter.isBatchable() || filterSets == null) {
+            return fetch(filter);
+        }
+        try {
+            return filterSets.get(key, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    return fetch(filter);
+                }
+            });
+        } catch (ExecutionException e) {
+            logger.debug("Unable to resolve the filter set of {}", e.getCause(), key);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Set<String> fetch(final SearchResultCypherFilter filter) {
+        return AccessController.doPrivileged(new PrivilegedAction<Set<String>>() {
+            @Override
+            public Set<String> run() {
+                return filter.fetch(Collections.<String>emptySet());
+            }
+        });
+    }
+}
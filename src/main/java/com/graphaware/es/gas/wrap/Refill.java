@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import com.graphaware.es.gas.util.NumberUtil;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_REQUEST;
+
+/**
+ * Searches the windows following the first one when the filters leave fewer hits than the requested page. Every window
+ * is filtered on its own and the survivors are kept, so the modifiers are expected to return their input unpaged. Rounds
+ * stop as soon as the page is full, the hits run out, the maximum number of rounds or the index result window is reached.
+ */
+public class Refill {
+
+    public static final String MAX_ROUNDS = "gas.refill.max_rounds";
+
+    private final Client client;
+    private final SearchRequest request;
+    private final Map<String, Object> source;
+    private final int size;
+    private final int from;
+    private final int window;
+    private final int maxResultWindow;
+    private final int maxRounds;
+
+    private Refill(Client client, SearchRequest request, Map<String, Object> source, int size, int from, int window, int maxResultWindow, int maxRounds) {
+        this.client = client;
+        this.request = request;
+        this.source = source;
+        this.size = size;
+        this.from = from;
+        this.window = window;
+        this.maxResultWindow = maxResultWindow;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * @return <code>true</code> if a page of the given size of the search can be refilled.
+     */
+    public static boolean isPossible(Map<String, Object> source, int size, int maxRounds) {
+        return maxRounds > 0 && size > 0 && !source.containsKey(RESCORE);
+    }
+
+    /**
+     * @return the refill of the page of a search whose window starts at the first hit.
+     */
+    public static Refill prepare(Client client, SearchRequest request, Map<String, Object> source, int size, int from, int maxResultWindow, int maxRounds) {
+        int window = NumberUtil.getInt(source.get(SIZE), 10);
+
+        //the next windows only need the hits
+        Map<String, Object> nextSource = new HashMap<>(source);
+        nextSource.remove(AGGS);
+        nextSource.remove(AGGREGATIONS);
+        nextSource.remove(SUGGEST);
+
+        return new Refill(client, request, nextSource, size, from, window, maxResultWindow, maxRounds);
+    }
+
+    /**
+     * Modifies the hits of the response, followed by the hits of the next windows if needed, and passes the requested
+     * page of the survivors to the listener. The total is the number of survivors.
+     */
+    public void collect(SearchResponse response, List<SearchResultModifier> modifiers, ActionListener<InternalSearchHits> listener) {
+        InternalSearchHits hits = (InternalSearchHits) response.getHits();
+        next(new ArrayList<InternalSearchHit>(), hits.internalHits(), window, 1, hits.totalHits(), hits.maxScore(), modifiers, listener);
+    }
+
+    private void next(final List<InternalSearchHit> survivors, InternalSearchHit[] fetched, int requested, final int round, final long totalHits, final float maxScore, final List<SearchResultModifier> modifiers, final ActionListener<InternalSearchHits> listener) {
+        final int windowFrom = round * window;
+        try {
+            //the survivors of the previous windows are kept as they are
+            InternalSearchHits modified = new InternalSearchHits(fetched, totalHits, maxScore);
+            for (SearchResultModifier modifier : modifiers) {
+                modified = modifier.modify(modified);
+            }
+            survivors.addAll(Arrays.asList(modified.internalHits()));
+            if (fetched.length < requested || round > maxRounds || windowFrom >= maxResultWindow || windowFrom >= totalHits
+                    || survivors.size() >= from + size) {
+                listener.onResponse(page(survivors, maxScore));
+                return;
+            }
+        } catch (RuntimeException e) {
+            listener.onFailure(e);
+            return;
+        }
+
+        final int nextSize = Math.min(window, maxResultWindow - windowFrom);
+        client.search(buildRequest(windowFrom, nextSize), new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                InternalSearchHit[] nextHits = ((InternalSearchHits) response.getHits()).internalHits();
+                next(survivors, nextHits, nextSize, round + 1, totalHits, maxScore, modifiers, listener);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private InternalSearchHits page(List<InternalSearchHit> survivors, float maxScore) {
+        if (from >= survivors.size()) {
+            return new InternalSearchHits(new InternalSearchHit[0], survivors.size(), 0);
+        }
+        List<InternalSearchHit> page = survivors.subList(from, Math.min(survivors.size(), from + size));
+        return new InternalSearchHits(page.toArray(new InternalSearchHit[page.size()]), survivors.size(), maxScore);
+    }
+
+    SearchRequest buildRequest(int from, int size) {
+        Map<String, Object> nextSource = new HashMap<>(source);
+        nextSource.put(FROM, from);
+        nextSource.put(SIZE, size);
+
+        SearchRequest nextRequest = new SearchRequest(request)
+                .indices(request.indices())
+                .types(request.types())
+                .routing(request.routing())
+                .preference(request.preference())
+                .indicesOptions(request.indicesOptions())
+                .searchType(request.searchType())
+                .source(nextSource);
+        nextRequest.putHeader(GAS_REQUEST, false);
+
+        return nextRequest;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import com.graphaware.es.gas.modifier.WindowSearchResultModifier;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
+
+/**
+ * Coordinating node cache of the reranked candidate windows, keyed by the search without its page. The next pages of a
+ * cached search are served by fetching only their documents, without running the modifiers again.
+ */
+public class RerankedWindowCache {
+
+    public static final String CACHE_EXPIRE = "gas.window_cache.expire";
+    public static final String CACHE_SIZE = "gas.window_cache.size";
+
+    //the page fetch would not compute them over the whole window
+    private static final String[] NOT_CACHEABLE = {AGGS, AGGREGATIONS, SUGGEST, RESCORE, QUERY_BINARY};
+
+    private final Cache<String, RerankedWindow> windows;
+
+    public RerankedWindowCache(Settings settings) {
+        TimeValue expire = settings.getAsTime(CACHE_EXPIRE, TimeValue.timeValueMillis(0));
+        this.windows = expire.millis() > 0 ? CacheBuilder.newBuilder()
+                .maximumSize(settings.getAsLong(CACHE_SIZE, 1000L))
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .<String, RerankedWindow>build() : null;
+    }
+
+    public boolean isEnabled() {
+        return windows != null;
+    }
+
+    /**
+     * @return whether the search may be cached, judged from the top-level elements of a source which is not decoded.
+     */
+    public static boolean isCacheable(SplicedSearchSource source) {
+        for (String element : NOT_CACHEABLE) {
+            if (source.has(element)) {
+                return false;
+            }
+        }
+        return isCacheable(source.getSource());
+    }
+
+    public static boolean isCacheable(Map<String, Object> source) {
+        for (String element : NOT_CACHEABLE) {
+            if (source.containsKey(element)) {
+                return false;
+            }
+        }
+        return !Prefilter.isRequested(source);
+    }
+
+    /**
+     * @return the key of the search without its page, with the headers and context of the caller as in
+     * {@link ResponseCache#key}, <code>null</code> if they can't be part of a key. The index uuids and versions make a
+     * recreated index or a settings or mapping change a miss, other index changes are only seen once the entry expires.
+     */
+    public String key(SearchRequest request, String[] indices, MetaData metaData, Map<String, Object> source) {
+        Map<String, String> headers = ResponseCache.headers(request);
+        Map<String, String> context = ResponseCache.context(request);
+        if (headers == null || context == null) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>();
+        String[] sortedIndices = indices.clone();
+        Arrays.sort(sortedIndices);
+        for (String index : sortedIndices) {
+            IndexMetaData indexMetaData = metaData.index(index);
+            key.add(indexMetaData != null ? index + "/" + indexMetaData.getIndexUUID() + "@" + indexMetaData.getVersion() : index);
+        }
+        key.add(Arrays.toString(request.types()));
+        key.add(request.routing());
+        key.add(request.preference());
+        key.add(headers);
+        key.add(context);
+
+        Map<String, Object> search = new HashMap<>(source);
+        search.remove(SIZE);
+        search.remove(FROM);
+        key.add(canonical(search));
+        return key.toString();
+    }
+
+    public RerankedWindow get(String key) {
+        return windows.getIfPresent(key);
+    }
+
+    /**
+     * @return a modifier running the given modifier over the whole window, storing it and returning the requested page.
+     */
+    public SearchResultModifier store(SearchResultModifier windowModifier, final String key, int size, int from) {
+        return new WindowSearchResultModifier(windowModifier, new WindowSearchResultModifier.WindowListener() {
+            @Override
+            public void onWindow(InternalSearchHits window) {
+                windows.put(key, RerankedWindow.of(window));
+            }
+        }, size, from);
+    }
+
+    static Object canonical(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+            }
+            return sorted;
+        }
+        if (value instanceof List) {
+            List<Object> elements = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                elements.add(canonical(element));
+            }
+            return elements;
+        }
+        return value;
+    }
+
+    /**
+     * Ids and scores of a reranked window, in order.
+     */
+    public static class RerankedWindow {
+
+        private final String[] indices;
+        private final String[] types;
+        private final String[] ids;
+        private final float[] scores;
+        private final long totalHits;
+        private final float maxScore;
+
+        private RerankedWindow(String[] indices, String[] types, String[] ids, float[] scores, long totalHits, float maxScore) {
+            this.indices = indices;
+            this.types = types;
+            this.ids = ids;
+            this.scores = scores;
+            this.totalHits = totalHits;
+            this.maxScore = maxScore;
+        }
+
+        static RerankedWindow of(InternalSearchHits window) {
+            InternalSearchHit[] hits = window.internalHits();
+            String[] indices = new String[hits.length];
+            String[] types = new String[hits.length];
+            String[] ids = new String[hits.length];
+            float[] scores = new float[hits.length];
+            for (int i = 0; i < hits.length; i++) {
+                indices[i] = hits[i].shard() != null ? hits[i].shard().index() : null;
+                types[i] = hits[i].type();
+                ids[i] = hits[i].id();
+                scores[i] = hits[i].score();
+            }
+            return new RerankedWindow(indices, types, ids, scores, window.totalHits(), window.maxScore());
+        }
+
+        public boolean hasPage(int from) {
+            return from < ids.length;
+        }
+
+        /**
+         * @return the search loading the documents of the page only, from the concrete indices the window was found in.
+         */
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> pageSource(Map<String, Object> source, int from, int size, String[] concreteIndices) {
+            int to = to(from, size);
+            Set<String> pageIds = new LinkedHashSet<>(Arrays.asList(ids).subList(from, to));
+            Set<String> pageIndices = new HashSet<>(Arrays.asList(indices).subList(from, to));
+
+            Map<String, Object> page = new HashMap<>(source);
+            page.remove(GAS_BOOSTER_CLAUSE);
+            page.remove(GAS_FILTER_CLAUSE);
+            Prefilter.addIdsClause(page, pageIds, false);
+            int indexCount = concreteIndices.length;
+            if (!pageIndices.contains(null) && pageIndices.size() < indexCount) {
+                //the other indices can't hold a document of the page
+                Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) page.get(QUERY)).get(BOOL);
+                Map<String, Object> indexFilter = Collections.<String, Object>singletonMap(TERMS, Collections.singletonMap(INDEX_FIELD, new ArrayList<>(pageIndices)));
+                bool.put(FILTER, Arrays.asList(bool.get(FILTER), indexFilter));
+                indexCount = pageIndices.size();
+            }
+            //the same id can exist in each of the searched indices
+            page.put(SIZE, pageIds.size() * indexCount);
+            page.put(FROM, 0);
+            return page;
+        }
+
+        /**
+         * @return a modifier putting the fetched documents of the page in the cached order, with the cached scores.
+         */
+        public SearchResultModifier page(final int from, final int size) {
+            return new SearchResultModifier() {
+                @Override
+                public InternalSearchHits modify(InternalSearchHits hits) {
+                    Map<String, InternalSearchHit> fetched = new HashMap<>();
+                    for (InternalSearchHit hit : hits.internalHits()) {
+                        fetched.put(key(hit.shard() != null ? hit.shard().index() : null, hit.type(), hit.id()), hit);
+                    }
+                    List<InternalSearchHit> page = new ArrayList<>();
+                    for (int i = from; i < to(from, size); i++) {
+                        InternalSearchHit hit = fetched.get(key(indices[i], types[i], ids[i]));
+                        if (hit != null) {
+                            //deleted since the window was cached otherwise
+                            hit.score(scores[i]);
+                            page.add(hit);
+                        }
+                    }
+                    return new InternalSearchHits(page.toArray(new InternalSearchHit[page.size()]), totalHits, maxScore);
+                }
+
+                @Override
+                public void parseRequest(Map<String, Object> sourceAsMap) {
+                }
+            };
+        }
+
+        private int to(int from, int size) {
+            return (int) Math.min(ids.length, (long) from + size);
+        }
+
+        private static String key(String index, String type, String id) {
+            return index + "/" + type + "/" + id;
+        }
+    }
+}
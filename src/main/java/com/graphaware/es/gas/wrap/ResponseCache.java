@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinating node cache of the final responses of Graph-Aided searches. Responses are kept serialized, so the cache
+ * is bounded by their size and every hit returns a fresh copy.
+ */
+public class ResponseCache implements ToXContent {
+
+    public static final String CACHE_EXPIRE = "gas.response_cache.expire";
+    public static final String CACHE_MAX_BYTES = "gas.response_cache.max_bytes";
+
+    private final ESLogger logger;
+    private final long maxBytes;
+    private final Cache<String, BytesReference> responses;
+
+    @Inject
+    public ResponseCache(Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        TimeValue expire = settings.getAsTime(CACHE_EXPIRE, TimeValue.timeValueMillis(0));
+        this.maxBytes = settings.getAsBytesSize(CACHE_MAX_BYTES, new ByteSizeValue(50, ByteSizeUnit.MB)).bytes();
+        this.responses = expire.millis() > 0 ? CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, BytesReference>() {
+                    @Override
+                    public int weigh(String key, BytesReference response) {
+                        return key.length() + response.length();
+                    }
+                })
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .<String, BytesReference>build() : null;
+    }
+
+    public boolean isEnabled() {
+        return responses != null;
+    }
+
+    /**
+     * @return the key of the search, made of its body, options, headers and context, which carry the caller's
+     * credentials, and of the versions of the searched indices, which change with their settings. <code>null</code> if
+     * a header or context value has no value-based string, the search is then not cached.
+     */
+    public String key(SearchRequest request, String[] indices, MetaData metaData) {
+        Map<String, String> headers = headers(request);
+        Map<String, String> context = context(request);
+        if (headers == null || context == null) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>();
+        String[] sortedIndices = indices.clone();
+        Arrays.sort(sortedIndices);
+        for (String index : sortedIndices) {
+            IndexMetaData indexMetaData = metaData.index(index);
+            key.add(indexMetaData != null ? index + "/" + indexMetaData.getIndexUUID() + "@" + indexMetaData.getVersion() : index);
+        }
+        key.add(Arrays.toString(request.types()));
+        key.add(request.routing());
+        key.add(request.preference());
+        key.add(request.searchType());
+        key.add(bytes(request.source()));
+        key.add(bytes(request.extraSource()));
+        key.add(headers);
+        key.add(context);
+        return key.toString();
+    }
+
+    public SearchResponse get(String key) {
+        if (key == null) {
+            return null;
+        }
+        BytesReference cached = responses.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        try {
+            SearchResponse response = new SearchResponse();
+            response.readFrom(cached.streamInput());
+            return response;
+        } catch (IOException e) {
+            logger.debug("Unable to read cached response, discarding it", e);
+            responses.invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * @return a listener storing complete responses before passing them on, the given one if the search has no key.
+     */
+    public ActionListener<SearchResponse> store(final String key, final ActionListener<SearchResponse> listener) {
+        if (key == null) {
+            return listener;
+        }
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                if (response.getShardFailures().length == 0 && !response.isTimedOut() && !Boolean.TRUE.equals(response.isTerminatedEarly())) {
+                    put(key, response);
+                }
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        };
+    }
+
+    public void clear() {
+        if (responses != null) {
+            responses.invalidateAll();
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("enabled", isEnabled());
+        if (!isEnabled()) {
+            return builder;
+        }
+        long bytes = 0;
+        for (BytesReference response : responses.asMap().values()) {
+            bytes += response.length();
+        }
+        CacheStats stats = responses.stats();
+        builder.field("entries", responses.size());
+        builder.field("size_in_bytes", bytes);
+        builder.field("max_size_in_bytes", maxBytes);
+        builder.field("hits", stats.hitCount());
+        builder.field("misses", stats.missCount());
+        builder.field("evictions", stats.evictionCount());
+        return builder;
+    }
+
+    void put(String key, SearchResponse response) {
+        try {
+            BytesStreamOutput out = new BytesStreamOutput();
+            response.writeTo(out);
+            responses.put(key, out.bytes());
+        } catch (IOException e) {
+            logger.debug("Unable to cache response", e);
+        }
+    }
+
+    /**
+     * @return the sorted headers of the request, <code>null</code> if a value has no value-based string.
+     */
+    static Map<String, String> headers(SearchRequest request) {
+        Map<String, String> headers = new TreeMap<>();
+        for (String name : request.getHeaders()) {
+            Object value = request.getHeader(name);
+            if (!isPlain(value)) {
+                return null;
+            }
+            headers.put(name, String.valueOf(value));
+        }
+        return headers;
+    }
+
+    /**
+     * @return the sorted context of the request, <code>null</code> if a key or value has no value-based string.
+     */
+    static Map<String, String> context(SearchRequest request) {
+        Map<String, String> context = new TreeMap<>();
+        for (ObjectObjectCursor<Object, Object> entry : request.getContext()) {
+            if (!isPlain(entry.key) || !isPlain(entry.value)) {
+                return null;
+            }
+            context.put(String.valueOf(entry.key), String.valueOf(entry.value));
+        }
+        return context;
+    }
+
+    private static boolean isPlain(Object value) {
+        //other objects, like an authenticated user, may not tell callers apart in their string
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character;
+    }
+
+    private static String bytes(BytesReference bytes) {
+        //one char per byte, whatever the content type
+        return bytes != null ? new String(bytes.toBytes(), StandardCharsets.ISO_8859_1) : null;
+    }
+}
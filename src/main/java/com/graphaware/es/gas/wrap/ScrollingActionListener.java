@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_REQUEST;
+
+/**
+ * Applies the modifiers of a {@link GraphAidedScroll} to every batch. A batch whose hits are all filtered out is not
+ * returned to the client (which would end the scroll), the next batch is requested instead. The scroll id returned to
+ * the client carries the state of the scroll.
+ */
+public class ScrollingActionListener implements ActionListener<SearchResponse> {
+
+    private final ESLogger logger;
+    private final ActionListener<SearchResponse> wrapped;
+    private final ActionRequest request;
+    private final GraphAidedScroll scroll;
+    private final GraphAidedScrolls scrolls;
+    private final Client client;
+    private final Settings settings;
+    private final long startTime;
+
+    public ScrollingActionListener(ActionListener<SearchResponse> wrapped, ActionRequest request, GraphAidedScroll scroll, GraphAidedScrolls scrolls, Client client, long startTime, Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.wrapped = wrapped;
+        this.request = request;
+        this.scroll = scroll;
+        this.scrolls = scrolls;
+        this.client = client;
+        this.settings = settings;
+        this.startTime = startTime;
+    }
+
+    @Override
+    public void onResponse(final SearchResponse response) {
+        final String scrollId = response.getScrollId();
+        if (scrollId != null) {
+            scrolls.register(scrollId, scroll);
+        }
+
+        if (response.getHits().getHits().length == 0) {
+            encodeScrollId(response, scrollId);
+            wrapped.onResponse(response);
+            return;
+        }
+
+        final long totalHits = response.getHits().getTotalHits();
+        new WrappingActionListener(new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse modified) {
+                if (modified.getHits().getHits().length == 0 && scrollId != null) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("All hits of the batch have been filtered out, scrolling to the next batch");
+                    }
+                    client.searchScroll(nextBatch(scrollId), ScrollingActionListener.this);
+                    return;
+                }
+                ((InternalSearchHits) modified.getHits()).totalHits = totalHits;
+                encodeScrollId(modified, scrollId);
+                wrapped.onResponse(modified);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                wrapped.onFailure(e);
+            }
+        }, startTime, scroll.getModifiers(), scroll.getIndexInfo(), settings).onResponse(response);
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+        wrapped.onFailure(e);
+    }
+
+    private void encodeScrollId(SearchResponse response, String scrollId) {
+        if (scrollId != null && scroll.getState() != null) {
+            response.scrollId(GraphAidedScrolls.encode(scrollId, scroll.getState()));
+        }
+    }
+
+    private SearchScrollRequest nextBatch(String scrollId) {
+        SearchScrollRequest scrollRequest = new SearchScrollRequest(request)
+                .scrollId(scrollId)
+                .scroll(scroll.getKeepAlive());
+        scrollRequest.putHeader(GAS_REQUEST, false);
+
+        return scrollRequest;
+    }
+}
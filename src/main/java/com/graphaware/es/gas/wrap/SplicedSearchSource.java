@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_FILTER_CLAUSE;
+
+/**
+ * JSON search source where only the top-level elements read or written by Graph-Aided Search are decoded. The other
+ * elements, usually the query and the aggregations, are skipped by a streaming parser and copied back byte by byte.
+ */
+public class SplicedSearchSource {
+
+    static final Set<String> SPLICED = new HashSet<>(Arrays.asList(GAS_BOOSTER_CLAUSE, GAS_FILTER_CLAUSE, SIZE, FROM, QUERY_BINARY));
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final byte[] bytes;
+    private final List<int[]> kept;
+    private final Map<String, Object> source;
+    private final Set<String> elements;
+
+    private SplicedSearchSource(byte[] bytes, List<int[]> kept, Map<String, Object> source, Set<String> elements) {
+        this.bytes = bytes;
+        this.kept = kept;
+        this.source = source;
+        this.elements = elements;
+    }
+
+    /**
+     * @return the spliced source, <code>null</code> if the source is not a JSON object.
+     */
+    public static SplicedSearchSource parse(BytesReference reference) throws IOException {
+        if (XContentFactory.xContentType(reference) != XContentType.JSON) {
+            return null;
+        }
+
+        byte[] bytes = reference.toBytes();
+        List<int[]> kept = new ArrayList<>();
+        List<int[]> spliced = new ArrayList<>();
+        Set<String> elements = new HashSet<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            int start = -1;
+            boolean splice = false;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                int fieldStart = (int) parser.getTokenLocation().getByteOffset();
+                if (start >= 0) {
+                    (splice ? spliced : kept).add(new int[]{start, trimEnd(bytes, start, fieldStart)});
+                }
+                start = fieldStart;
+                splice = SPLICED.contains(parser.getCurrentName());
+                elements.add(parser.getCurrentName());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            if (token != JsonToken.END_OBJECT) {
+                return null;
+            }
+            if (start >= 0) {
+                (splice ? spliced : kept).add(new int[]{start, trimEnd(bytes, start, (int) parser.getTokenLocation().getByteOffset())});
+            }
+        }
+
+        return new SplicedSearchSource(bytes, kept, decode(bytes, spliced), elements);
+    }
+
+    /**
+     * @return the decoded Graph-Aided Search elements, changes to it are applied by {@link #build()}.
+     */
+    public Map<String, Object> getSource() {
+        return source;
+    }
+
+    /**
+     * @return whether the source has the top-level element, decoded or not.
+     */
+    public boolean has(String element) {
+        return elements.contains(element);
+    }
+
+    public BytesReference build() throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput(bytes.length);
+        out.writeByte((byte) '{');
+        boolean first = true;
+        for (int[] range : kept) {
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            out.writeBytes(bytes, range[0], range[1] - range[0]);
+            first = false;
+        }
+        if (!source.isEmpty()) {
+            BytesReference spliced = XContentFactory.jsonBuilder().map(source).bytes();
+            if (!first) {
+                out.writeByte((byte) ',');
+            }
+            //without the enclosing braces
+            spliced.slice(1, spliced.length() - 2).writeTo(out);
+        }
+        out.writeByte((byte) '}');
+        return out.bytes();
+    }
+
+    private static Map<String, Object> decode(byte[] bytes, List<int[]> ranges) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeByte((byte) '{');
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                out.writeByte((byte) ',');
+            }
+            out.writeBytes(bytes, ranges.get(i)[0], ranges.get(i)[1] - ranges.get(i)[0]);
+        }
+        out.writeByte((byte) '}');
+        return XContentHelper.convertToMap(out.bytes(), true).v2();
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+        if (end > start && bytes[end - 1] == ',') {
+            end--;
+        }
+        while (end > start && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_REQUEST;
+
+/**
+ * Splits a Graph-Aided Search into two rounds. The first round only returns ids and scores of the whole candidate
+ * window, the second one loads stored fields, source and highlights for the hits that survived the modifiers.
+ */
+public class TwoPhaseFetch {
+
+    static final String[] FETCH_ELEMENTS = {SOURCE, FIELDS, FIELDDATA_FIELDS, SCRIPT_FIELDS, HIGHLIGHT};
+
+    private final Client client;
+    private final SearchRequest request;
+    private final Object query;
+    private final Map<String, Object> fetchElements;
+
+    private TwoPhaseFetch(Client client, SearchRequest request, Object query, Map<String, Object> fetchElements) {
+        this.client = client;
+        this.request = request;
+        this.query = query;
+        this.fetchElements = fetchElements;
+    }
+
+    public static TwoPhaseFetch prepare(Client client, SearchRequest request, Map<String, Object> source) {
+        return new TwoPhaseFetch(client, request, source.get(QUERY), removeFetchElements(source));
+    }
+
+    /**
+     * Makes the search return ids and scores only.
+     *
+     * @return the removed fetch elements.
+     */
+    static Map<String, Object> removeFetchElements(Map<String, Object> source) {
+        Map<String, Object> fetchElements = new HashMap<>();
+        for (String element : FETCH_ELEMENTS) {
+            if (source.containsKey(element)) {
+                fetchElements.put(element, source.remove(element));
+            }
+        }
+        source.put(SOURCE, false);
+        source.put(FIELDS, Collections.emptyList());
+        return fetchElements;
+    }
+
+    public void fetch(final SearchResponse response, final ActionListener<SearchResponse> listener) {
+        final InternalSearchHit[] hits = ((InternalSearchHits) response.getHits()).internalHits();
+        if (hits.length == 0) {
+            listener.onResponse(response);
+            return;
+        }
+
+        client.search(buildFetchRequest(hits), new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse fetched) {
+                merge(hits, fetched.getHits().getHits());
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    SearchRequest buildFetchRequest(InternalSearchHit[] hits) {
+        SearchRequest fetchRequest = new SearchRequest(request)
+                .indices(request.indices())
+                .types(request.types())
+                .routing(request.routing())
+                .preference(request.preference())
+                .indicesOptions(request.indicesOptions())
+                .source(buildFetchSource(hits));
+        fetchRequest.putHeader(GAS_REQUEST, false);
+
+        return fetchRequest;
+    }
+
+    Map<String, Object> buildFetchSource(InternalSearchHit[] hits) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (InternalSearchHit hit : hits) {
+            ids.add(hit.getId());
+        }
+
+        Map<String, Object> idsQuery = new HashMap<>();
+        idsQuery.put(VALUES, new ArrayList<>(ids));
+
+        Map<String, Object> bool = new HashMap<>();
+        bool.put(MUST, query != null ? query : Collections.singletonMap(MATCH_ALL, Collections.emptyMap()));
+        bool.put(FILTER, Collections.singletonMap(IDS, idsQuery));
+
+        Map<String, Object> source = new HashMap<>(fetchElements);
+        source.put(QUERY, Collections.singletonMap(BOOL, bool));
+        source.put(SIZE, ids.size());
+        source.put(FROM, 0);
+
+        return source;
+    }
+
+    static void merge(InternalSearchHit[] hits, SearchHit[] fetchedHits) {
+        Map<String, InternalSearchHit> fetchedById = new HashMap<>();
+        for (SearchHit fetchedHit : fetchedHits) {
+            fetchedById.put(key(fetchedHit), (InternalSearchHit) fetchedHit);
+        }
+
+        for (InternalSearchHit hit : hits) {
+            InternalSearchHit fetched = fetchedById.get(key(hit));
+            if (fetched == null) {
+                continue;
+            }
+            hit.sourceRef(fetched.sourceRef());
+            hit.fields(fetched.fieldsOrNull());
+            hit.highlightFields(fetched.internalHighlightFields());
+        }
+    }
+
+    private static String key(SearchHit hit) {
+        String index = hit.getShard() != null ? hit.getShard().index() : null;
+        return index + "/" + hit.getType() + "/" + hit.getId();
+    }
+}
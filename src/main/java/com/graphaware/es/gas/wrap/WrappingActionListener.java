@@ -51,13 +51,25 @@ public class WrappingActionListener implements ActionListener<SearchResponse> {
     private final long startTime;
     private final List<SearchResultModifier> modifiers;
     private final IndexInfo indexInfo;
+    private final TwoPhaseFetch fetch;
+    private final Refill refill;
 
     public WrappingActionListener(ActionListener<SearchResponse> wrapped, long startTime, List<SearchResultModifier> modifiers, IndexInfo indexInfo, Settings settings) {
+        this(wrapped, startTime, modifiers, indexInfo, null, settings);
+    }
+
+    public WrappingActionListener(ActionListener<SearchResponse> wrapped, long startTime, List<SearchResultModifier> modifiers, IndexInfo indexInfo, TwoPhaseFetch fetch, Settings settings) {
+        this(wrapped, startTime, modifiers, indexInfo, fetch, null, settings);
+    }
+
+    public WrappingActionListener(ActionListener<SearchResponse> wrapped, long startTime, List<SearchResultModifier> modifiers, IndexInfo indexInfo, TwoPhaseFetch fetch, Refill refill, Settings settings) {
         this.logger = Loggers.getLogger(getClass(), settings);
         this.wrapped = wrapped;
         this.startTime = startTime;
         this.modifiers = modifiers;
         this.indexInfo = indexInfo;
+        this.fetch = fetch;
+        this.refill = refill;
     }
 
     @Override
@@ -67,18 +79,52 @@ public class WrappingActionListener implements ActionListener<SearchResponse> {
             return;
         }
 
+        if (refill != null) {
+            refill.collect(response, modifiers, new ActionListener<InternalSearchHits>() {
+                @Override
+                public void onResponse(InternalSearchHits hits) {
+                    respond(response, hits);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    wrapped.onFailure(e);
+                }
+            });
+            return;
+        }
+
+        respond(response, null);
+    }
+
+    private void respond(final SearchResponse response, final InternalSearchHits refilledHits) {
         if (logger.isDebugEnabled()) {
             logger.debug("Boosting results: {}", response);
         }
 
+        final SearchResponse newResponse;
         try {
-            wrapped.onResponse(handleResponse(response, startTime, modifiers));
+            newResponse = handleResponse(response, startTime, modifiers, refilledHits);
         } catch (final Exception e) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Failed to parse a search response.", e);
             }
             throw new RuntimeException("Failed to parse a search response.", e);
         }
+
+        if (fetch != null) {
+            fetch.fetch(newResponse, wrapped);
+        } else {
+            wrapped.onResponse(newResponse);
+        }
+    }
+
+    public List<SearchResultModifier> getModifiers() {
+        return modifiers;
+    }
+
+    public IndexInfo getIndexInfo() {
+        return indexInfo;
     }
 
     @Override
@@ -86,13 +132,19 @@ public class WrappingActionListener implements ActionListener<SearchResponse> {
         wrapped.onFailure(e);
     }
 
-    private SearchResponse handleResponse(final SearchResponse response, final long startTime, final List<SearchResultModifier> modifiers) throws IOException {
+    private SearchResponse handleResponse(final SearchResponse response, final long startTime, final List<SearchResultModifier> modifiers, final InternalSearchHits refilledHits) throws IOException {
         BytesStreamOutput out = new BytesStreamOutput();
         response.writeTo(out);
         ChannelBufferStreamInput in = new ChannelBufferStreamInput(out.bytes().toChannelBuffer());
 
         Map<String, Object> headers = readHeaders(in);
-        InternalSearchHits hits = modifyHits(modifiers, readHits(in));
+        InternalSearchHits hits = readHits(in);
+        if (refilledHits != null) {
+            //every window has already been modified by the refill
+            hits = new InternalSearchHits(sortResults(refilledHits), refilledHits.totalHits(), refilledHits.maxScore());
+        } else {
+            hits = modifyHits(modifiers, hits);
+        }
         InternalAggregations aggregations = readAggregations(in);
         Suggest suggest = readSuggestions(in);
         Boolean timedOut = in.readBoolean();
@@ -16,15 +16,25 @@
 
 package com.graphaware.es.gas.booster;
 
+import com.graphaware.es.gas.domain.ExternalResult;
 import com.graphaware.es.gas.domain.IndexInfo;
 import com.graphaware.es.gas.domain.TestIndexInfo;
 import com.graphaware.es.gas.stubs.CypherSearchResultTestBooster;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
 import static org.junit.Assert.*;
 
 public class GraphBoosterTest {
@@ -83,6 +93,97 @@ public class GraphBoosterTest {
         }
     }
 
+    @Test
+    public void testRequestParamsAreMergedIntoCypherParameters() {
+        HashMap<String, Object> sourceMap = getBoosterSourceMap("*");
+        ((HashMap<String, Object>) sourceMap.get("gas-booster")).put("params", Collections.singletonMap("userId", 12));
+        SearchResultCypherBooster cypherBooster = (SearchResultCypherBooster) booster;
+        cypherBooster.parseRequest(sourceMap);
+
+        HashMap<String, Object> parameters = cypherBooster.getParameters(Collections.singleton("1"));
+        assertEquals(12, parameters.get("userId"));
+        assertEquals(Collections.singleton("1"), parameters.get("ids"));
+    }
+
+    @Test
+    public void testRequestParamsArePartOfTheBatchKey() {
+        HashMap<String, Object> first = getBoosterSourceMap("*");
+        ((HashMap<String, Object>) first.get("gas-booster")).put("params", Collections.singletonMap("userId", 12));
+        booster.parseRequest(first);
+        String firstKey = ((SearchResultCypherBooster) booster).getBatchKey();
+
+        HashMap<String, Object> second = getBoosterSourceMap("*");
+        ((HashMap<String, Object>) second.get("gas-booster")).put("params", Collections.singletonMap("userId", 13));
+        booster.parseRequest(second);
+
+        assertNotEquals(firstKey, ((SearchResultCypherBooster) booster).getBatchKey());
+    }
+
+    @Test
+    public void testIdsParamIsReserved() {
+        HashMap<String, Object> sourceMap = getBoosterSourceMap("*");
+        ((HashMap<String, Object>) sourceMap.get("gas-booster")).put("params", Collections.singletonMap("ids", 1));
+        try {
+            booster.parseRequest(sourceMap);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("reserved"));
+        }
+    }
+
+    @Test
+    public void testThresholdNeedsMonotonicOperator() {
+        HashMap<String, Object> sourceMap = getThresholdSourceMap("*");
+        booster.parseRequest(sourceMap);
+        assertTrue(booster.isThreshold());
+        assertFalse(((SearchResultCypherBooster) booster).isBatchable());
+        String thresholdKey = ((SearchResultCypherBooster) booster).getBatchKey();
+
+        booster.parseRequest(getThresholdSourceMap("-"));
+        assertFalse(booster.isThreshold());
+
+        booster.parseRequest(getBoosterSourceMap("+"));
+        assertFalse(booster.isThreshold());
+        //the graph scores, and the shard rescore cache keyed by the lookup, are the same
+        assertEquals(((SearchResultCypherBooster) booster).getBatchKey(), thresholdKey);
+    }
+
+    @Test
+    public void testThresholdStopsWhenNoHitLeftCanEnterThePage() {
+        ChunkBooster chunkBooster = new ChunkBooster();
+        chunkBooster.parseRequest(getThresholdSourceMap("*"));
+
+        InternalSearchHits result = chunkBooster.modify(hits(10));
+
+        //5 is boosted to 12, the best score after the third chunk is 4 * 2
+        List<String> ids = new ArrayList<>();
+        for (InternalSearchHit hit : result.internalHits()) {
+            ids.add(hit.getId());
+        }
+        assertEquals(Arrays.asList("5", "1"), ids);
+        assertEquals(3, chunkBooster.chunks);
+        assertEquals(12f, result.maxScore(), 0.001f);
+        assertEquals(10, result.totalHits());
+    }
+
+    private HashMap<String, Object> getThresholdSourceMap(String operator) {
+        HashMap<String, Object> sourceMap = getBoosterSourceMap(operator);
+        HashMap<String, Object> externalParameters = (HashMap<String, Object>) sourceMap.get("gas-booster");
+        externalParameters.put("probeSize", 2);
+        externalParameters.put("maxGraphScore", 2);
+        sourceMap.put("size", 2);
+
+        return sourceMap;
+    }
+
+    private static InternalSearchHits hits(int count) {
+        InternalSearchHit[] hits = new InternalSearchHit[count];
+        for (int i = 0; i < count; i++) {
+            hits[i] = hit(String.valueOf(i + 1), count - i);
+        }
+        return new InternalSearchHits(hits, count, count);
+    }
+
     private HashMap<String, Object> getBoosterSourceMap(String operator) {
         HashMap<String, Object> sourceMap = new HashMap<>();
         HashMap<String, Object> externalParameters = new HashMap<>();
@@ -92,4 +193,23 @@ public class GraphBoosterTest {
 
         return sourceMap;
     }
+
+    private static class ChunkBooster extends SearchResultExternalBooster {
+
+        private int chunks;
+
+        ChunkBooster() {
+            super(Settings.EMPTY, TestIndexInfo.newInstance());
+        }
+
+        @Override
+        protected Map<String, ExternalResult> externalDoReorder(Set<String> keySet) {
+            chunks++;
+            Map<String, ExternalResult> result = new HashMap<>();
+            for (String id : keySet) {
+                result.put(id, new ExternalResult(id, "5".equals(id) ? 2 : 1));
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.cypher;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CypherQueriesTest {
+
+    private final Executor sameThread = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        CypherQueries.clear();
+    }
+
+    @Test
+    public void testNewShapeIsExplainedOnOtherServers() {
+        CypherQueries.configure(Settings.EMPTY, sameThread);
+        RecordingEndPoint first = new RecordingEndPoint("http://neo4j-1:7474");
+        RecordingEndPoint second = new RecordingEndPoint("http://neo4j-2:7474");
+        CypherQueries.connected(first);
+        CypherQueries.connected(second);
+
+        CypherQueries.execute(first, "MATCH (n) WHERE id(n) IN {ids} RETURN n", new HashMap<String, Object>());
+        CypherQueries.execute(first, "MATCH (n) WHERE id(n) IN {ids} RETURN n", new HashMap<String, Object>());
+
+        assertEquals(2, first.queries.size());
+        assertEquals(1, second.queries.size());
+        assertEquals("EXPLAIN MATCH (n) WHERE id(n) IN {ids} RETURN n", second.queries.get(0));
+    }
+
+    @Test
+    public void testKnownShapesAreExplainedOnNewServer() {
+        CypherQueries.configure(Settings.EMPTY, sameThread);
+        RecordingEndPoint first = new RecordingEndPoint("http://neo4j-1:7474");
+        CypherQueries.execute(first, "MATCH (n) RETURN n", new HashMap<String, Object>());
+
+        RecordingEndPoint second = new RecordingEndPoint("http://neo4j-2:7474");
+        CypherQueries.connected(second);
+        CypherQueries.connected(second);
+
+        assertEquals(1, second.queries.size());
+        assertEquals("EXPLAIN MATCH (n) RETURN n", second.queries.get(0));
+    }
+
+    @Test
+    public void testInlinedLiteralsAreNotShapes() {
+        CypherQueries.configure(Settings.EMPTY, sameThread);
+        RecordingEndPoint endPoint = new RecordingEndPoint("http://neo4j-1:7474");
+        CypherQueries.execute(endPoint, "MATCH (n) WHERE id(n) = 2 RETURN n", new HashMap<String, Object>());
+
+        assertEquals("MATCH (n) WHERE id(n) = 2 RETURN n", endPoint.queries.get(0));
+        assertTrue(CypherQueries.getShapes().isEmpty());
+    }
+
+    @Test
+    public void testAutoParameterizedQueryIsSent() {
+        CypherQueries.configure(Settings.builder().put(CypherQueries.AUTO_PARAMETERIZE, true).build(), sameThread);
+        RecordingEndPoint endPoint = new RecordingEndPoint("http://neo4j-1:7474");
+        CypherQueries.execute(endPoint, "MATCH (n) WHERE id(n) = 2 RETURN n", new HashMap<String, Object>());
+
+        assertEquals("MATCH (n) WHERE id(n) = {gas_literal_0} RETURN n", endPoint.queries.get(0));
+        assertEquals(2L, endPoint.parameters.get(0).get("gas_literal_0"));
+        assertTrue(CypherQueries.getShapes().contains("MATCH (n) WHERE id(n) = {gas_literal_0} RETURN n"));
+    }
+
+    private static class RecordingEndPoint extends CypherEndPoint {
+
+        private final List<String> queries = new ArrayList<>();
+        private final List<HashMap<String, Object>> parameters = new ArrayList<>();
+
+        RecordingEndPoint(String neo4jHost) {
+            super(Settings.EMPTY, neo4jHost);
+        }
+
+        @Override
+        public CypherResult executeCypher(String query, HashMap<String, Object> parameters) {
+            this.queries.add(query);
+            this.parameters.add(parameters);
+            return new CypherResult();
+        }
+
+        @Override
+        public CypherResult executeCypher(HashMap<String, String> headers, String query, HashMap<String, Object> parameters) {
+            return executeCypher(query, parameters);
+        }
+    }
+}
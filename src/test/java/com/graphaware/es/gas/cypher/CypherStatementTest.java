@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.cypher;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class CypherStatementTest {
+
+    @Test
+    public void testLiteralsAreMovedIntoParameters() {
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", "1");
+        CypherStatement statement = CypherStatement.parameterize("MATCH (input:User) WHERE id(input) = 2 MATCH (input)-[r:RATED]->(movie) WHERE r.rate > 3.5 AND movie.genre = 'drama' AND movie.id IN {ids} RETURN movie.uuid as id", parameters);
+
+        assertEquals("MATCH (input:User) WHERE id(input) = {gas_literal_0} MATCH (input)-[r:RATED]->(movie) WHERE r.rate > {gas_literal_1} AND movie.genre = {gas_literal_2} AND movie.id IN {ids} RETURN movie.uuid as id", statement.getQuery());
+        assertEquals(3, statement.getLiterals());
+        assertEquals(2L, statement.getParameters().get("gas_literal_0"));
+        assertEquals(3.5, statement.getParameters().get("gas_literal_1"));
+        assertEquals("drama", statement.getParameters().get("gas_literal_2"));
+        assertEquals("1", statement.getParameters().get("ids"));
+        assertFalse(parameters.containsKey("gas_literal_0"));
+    }
+
+    @Test
+    public void testVariationsShareTheSameShape() {
+        HashMap<String, Object> none = new HashMap<>();
+        String first = CypherStatement.parameterize("MATCH (u:User) WHERE id(u) = 2 RETURN u.id as id", none).getQuery();
+        String second = CypherStatement.parameterize("MATCH (u:User) WHERE id(u) = 17 RETURN u.id as id", none).getQuery();
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testIdentifiersRangesAndParametersAreKept() {
+        String query = "MATCH (n2:Label1)-[:KNOWS*1..3]->(`m 4`) WHERE n2.prop5 = $p6 AND n2.x = {p7} AND n2.y = 1e3 // 42\nRETURN n2.id as id";
+        CypherStatement statement = CypherStatement.parameterize(query, new HashMap<String, Object>());
+
+        assertEquals(query, statement.getQuery());
+        assertEquals(0, statement.getLiterals());
+    }
+
+    @Test
+    public void testBlockCommentsAreSkipped() {
+        String query = "MATCH (n) /* user's items, top 5 */ WHERE n.name = 'x' RETURN n";
+        CypherStatement statement = CypherStatement.parameterize(query, new HashMap<String, Object>());
+
+        assertEquals("MATCH (n) /* user's items, top 5 */ WHERE n.name = {gas_literal_0} RETURN n", statement.getQuery());
+        assertEquals(1, statement.getLiterals());
+        assertEquals("x", statement.getParameters().get("gas_literal_0"));
+    }
+
+    @Test
+    public void testDetectionLeavesTheQueryUnchanged() {
+        String query = "MATCH (n) WHERE n.name = \"x\" RETURN n LIMIT 10";
+        CypherStatement statement = CypherStatement.of(query, new HashMap<String, Object>());
+
+        assertEquals(query, statement.getQuery());
+        assertEquals(2, statement.getLiterals());
+        assertTrue(statement.getParameters().isEmpty());
+    }
+}
@@ -3,11 +3,20 @@ package com.graphaware.es.gas.filter;
 import com.graphaware.es.gas.domain.IndexInfo;
 import com.graphaware.es.gas.domain.TestIndexInfo;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
 import static org.junit.Assert.*;
 
 public class SearchResultCypherFilterTest {
@@ -62,6 +71,104 @@ public class SearchResultCypherFilterTest {
         assertEquals("uuid", filter.getIdResultName());
     }
 
+    @Test
+    public void testParamsMustBeAnObject() {
+        SearchResultCypherFilter filter = getFilter();
+        Map<String, Object> map = getDefaultMap();
+        ((Map<String, Object>) map.get("gas-filter")).put("params", "userId");
+        try {
+            filter.parseRequest(map);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("params"));
+        }
+    }
+
+    @Test
+    public void testParamsArePartOfTheBatchKey() {
+        SearchResultCypherFilter filter = getFilter();
+        Map<String, Object> map = getDefaultMap();
+        ((Map<String, Object>) map.get("gas-filter")).put("params", Collections.singletonMap("userId", 12));
+        filter.parseRequest(map);
+
+        assertTrue(filter.getBatchKey().contains("userId=12"));
+    }
+
+    @Test
+    public void testProbeStopsWhenThePageIsFilled() {
+        ProbingFilter filter = new ProbingFilter("2");
+        HashMap<String, Object> map = getProbeMap(false);
+        filter.parseRequest(map);
+
+        InternalSearchHits result = filter.modify(hits(10));
+
+        assertEquals(Arrays.asList("1", "3", "4"), ids(result));
+        assertEquals(Arrays.asList(3, 3), filter.chunks);
+        //the 4 hits which have not been probed are counted
+        assertEquals(9, result.totalHits());
+        assertFalse(filter.isBatchable());
+    }
+
+    @Test
+    public void testProbeHasItsOwnBatchKey() {
+        SearchResultCypherFilter filter = getFilter();
+        filter.parseRequest(getProbeMap(false));
+        SearchResultCypherFilter plain = getFilter();
+        plain.parseRequest(getDefaultMap());
+
+        assertNotNull(filter.getBatchKey());
+        assertNotEquals(plain.getBatchKey(), filter.getBatchKey());
+    }
+
+    @Test
+    public void testProbeWithExactTotalLooksEveryHitUp() {
+        ProbingFilter filter = new ProbingFilter("2", "9");
+        filter.parseRequest(getProbeMap(true));
+
+        InternalSearchHits result = filter.modify(hits(10));
+
+        assertEquals(Arrays.asList("1", "3", "4"), ids(result));
+        assertEquals(Arrays.asList(3, 3, 3, 1), filter.chunks);
+        assertEquals(8, result.totalHits());
+    }
+
+    @Test
+    public void testProbeIsNeverPrefiltered() {
+        ProbingFilter filter = new ProbingFilter();
+        HashMap<String, Object> map = getProbeMap(false);
+        ((Map<String, Object>) map.get("gas-filter")).put("prefilter", true);
+        filter.parseRequest(map);
+
+        assertFalse(filter.isPrefilter());
+    }
+
+    private HashMap<String, Object> getProbeMap(boolean exactTotal) {
+        HashMap<String, Object> map = getDefaultMap();
+        Map<String, Object> gasFilter = (Map<String, Object>) map.get("gas-filter");
+        gasFilter.put("exclude", true);
+        gasFilter.put("probeSize", 3);
+        gasFilter.put("exactTotal", exactTotal);
+        map.put("size", 3);
+        return map;
+    }
+
+    private static InternalSearchHits hits(int count) {
+        InternalSearchHit[] hits = new InternalSearchHit[count];
+        for (int i = 0; i < count; i++) {
+            //in reverse score order
+            hits[i] = hit(String.valueOf(count - i), i + 1);
+        }
+        return new InternalSearchHits(hits, count, count);
+    }
+
+    private static List<String> ids(InternalSearchHits hits) {
+        List<String> ids = new ArrayList<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
     private HashMap<String, Object> getDefaultMap() {
         HashMap<String, Object> map = new HashMap<>();
         HashMap<String, Object> gasFilter = new HashMap<>();
@@ -77,4 +184,23 @@ public class SearchResultCypherFilterTest {
 
         return new SearchResultCypherFilter(builder.build(), indexInfo);
     }
+
+    private static class ProbingFilter extends SearchResultCypherFilter {
+
+        private final Set<String> excluded;
+        private final List<Integer> chunks = new ArrayList<>();
+
+        ProbingFilter(String... excluded) {
+            super(Settings.EMPTY, TestIndexInfo.newInstance());
+            this.excluded = new HashSet<>(Arrays.asList(excluded));
+        }
+
+        @Override
+        protected Set<String> getProbedItems(Set<String> ids) {
+            chunks.add(ids.size());
+            Set<String> matched = new HashSet<>(ids);
+            matched.retainAll(excluded);
+            return matched;
+        }
+    }
 }
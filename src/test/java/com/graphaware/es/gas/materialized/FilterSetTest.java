@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class FilterSetTest {
+
+    @Test
+    public void testDeltaProducesNewSnapshot() {
+        FilterSet blocked = FilterSet.of(Arrays.asList("3", "1", "2"));
+
+        FilterSet updated = blocked.apply(new HashSet<>(Arrays.asList("4", "5")), Collections.singleton("1"));
+
+        assertEquals(3, blocked.size());
+        assertTrue(blocked.contains("1"));
+        assertFalse(blocked.contains("4"));
+
+        assertEquals(new HashSet<>(Arrays.asList("2", "3", "4", "5")), updated);
+        assertFalse(updated.contains("1"));
+        assertFalse(updated.contains(1));
+    }
+
+    @Test
+    public void testEmptyDeltaKeepsSnapshot() {
+        FilterSet blocked = FilterSet.of(Collections.singleton("1"));
+
+        assertSame(blocked, blocked.apply(Collections.<String>emptySet(), Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testRepeatedDeltaKeepsSnapshot() {
+        FilterSet blocked = FilterSet.of(Arrays.asList("1", "3"));
+
+        FilterSet updated = blocked.apply(new HashSet<>(Arrays.asList("0", "2", "4")), Collections.singleton("3"));
+
+        assertArrayEquals(new Object[]{"0", "1", "2", "4"}, updated.toArray());
+        assertSame(updated, updated.apply(new HashSet<>(Arrays.asList("0", "2", "4")), Collections.singleton("3")));
+    }
+
+    @Test
+    public void testHighestCursorIsKept() {
+        assertEquals(10L, MaterializedFilterLoader.max(10L, 5));
+        assertEquals(12, MaterializedFilterLoader.max(10L, 12));
+        assertEquals("b", MaterializedFilterLoader.max("a", "b"));
+        assertEquals(3, MaterializedFilterLoader.max(null, 3));
+        assertEquals(3, MaterializedFilterLoader.max(3, null));
+    }
+}
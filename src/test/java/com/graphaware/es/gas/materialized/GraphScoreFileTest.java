@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.materialized;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GraphScoreFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScoresAreLookedUp() throws IOException {
+        Map<String, Float> scores = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            scores.put("doc-" + i, (float) i / 10);
+        }
+        scores.put("\u00e9l\u00e8ve", 42f);
+
+        Path path = folder.getRoot().toPath().resolve("pagerank.scores");
+        GraphScoreFile.write(path, scores);
+        GraphScoreFile file = GraphScoreFile.open(path);
+
+        assertEquals(1001, file.size());
+        assertEquals(0f, file.get("doc-0"), 0);
+        assertEquals(99.9f, file.get("doc-999"), 0.0001);
+        assertEquals(42f, file.get("\u00e9l\u00e8ve"), 0);
+        assertNull(file.get("doc-1000"));
+        assertNull(file.get(""));
+    }
+
+    @Test
+    public void testFileIsReplaced() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("popularity.scores");
+        GraphScoreFile.write(path, Collections.singletonMap("1", 1f));
+        GraphScoreFile previous = GraphScoreFile.open(path);
+
+        GraphScoreFile.write(path, Collections.singletonMap("2", 2f));
+        GraphScoreFile current = GraphScoreFile.open(path);
+
+        assertEquals(1f, previous.get("1"), 0);
+        assertNull(current.get("1"));
+        assertEquals(2f, current.get("2"), 0);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("empty.scores");
+        GraphScoreFile.write(path, Collections.<String, Float>emptyMap());
+
+        assertEquals(0, GraphScoreFile.open(path).size());
+        assertNull(GraphScoreFile.open(path).get("1"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.stubs.BatchedSearchResultTestModifier;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hits;
+import static org.junit.Assert.*;
+
+public class ChainedSearchResultModifierTest {
+
+    private final List<String> applied = new ArrayList<>();
+
+    @Test
+    public void testBoostersOnlySeeHitsSurvivingTheFilters() {
+        BatchedSearchResultTestModifier filter = new BatchedSearchResultTestModifier("filter", applied).keeping("1", "3", "4");
+        ScoringBooster booster = new ScoringBooster();
+
+        ChainedSearchResultModifier chain = new ChainedSearchResultModifier(Collections.<SearchResultModifier>singletonList(filter), Collections.<SearchResultModifier>singletonList(booster), new FilterSelectivity(), null, 2, 1);
+        InternalSearchHits result = chain.modify(hits("1", "2", "3", "4", "5"));
+
+        assertEquals(new HashSet<>(Arrays.asList("1", "3", "4")), booster.seen);
+        assertEquals(Arrays.asList("filter", "booster"), applied);
+        //boosted scores are 10, 30 and 40, the page starts after the best hit
+        assertEquals(2, result.internalHits().length);
+        assertEquals("3", result.internalHits()[0].getId());
+        assertEquals("1", result.internalHits()[1].getId());
+        assertEquals(40, result.maxScore(), 0);
+    }
+
+    @Test
+    public void testMostSelectiveFilterRunsFirst() {
+        FilterSelectivity selectivity = new FilterSelectivity();
+        BatchedSearchResultTestModifier wide = new BatchedSearchResultTestModifier("wide", applied).keeping("1", "2", "3", "4");
+        BatchedSearchResultTestModifier narrow = new BatchedSearchResultTestModifier("narrow", applied).keeping("1");
+
+        ChainedSearchResultModifier chain = new ChainedSearchResultModifier(Arrays.<SearchResultModifier>asList(wide, narrow), Collections.<SearchResultModifier>emptyList(), selectivity, null, 10, 0);
+        chain.modify(hits("1", "2", "3", "4", "5"));
+        assertEquals(Arrays.asList("wide", "narrow"), applied);
+
+        applied.clear();
+        chain.modify(hits("1", "2", "3", "4", "5"));
+        assertEquals(Arrays.asList("narrow", "wide"), applied);
+        assertTrue(selectivity.getKept(narrow) < selectivity.getKept(wide));
+    }
+
+    @Test
+    public void testEmptyFilterResultSkipsTheBoosters() {
+        BatchedSearchResultTestModifier filter = new BatchedSearchResultTestModifier("filter", applied).keeping();
+        ScoringBooster booster = new ScoringBooster();
+
+        ChainedSearchResultModifier chain = new ChainedSearchResultModifier(Collections.<SearchResultModifier>singletonList(filter), Collections.<SearchResultModifier>singletonList(booster), new FilterSelectivity(), null, 10, 0);
+
+        assertEquals(0, chain.modify(hits("1", "2")).internalHits().length);
+        assertNull(booster.seen);
+    }
+
+    private class ScoringBooster implements SearchResultModifier {
+
+        private Set<String> seen;
+
+        @Override
+        public InternalSearchHits modify(InternalSearchHits hits) {
+            applied.add("booster");
+            seen = new HashSet<>();
+            for (InternalSearchHit hit : hits.internalHits()) {
+                seen.add(hit.getId());
+                hit.score(hit.score() * 10 * Integer.parseInt(hit.getId()));
+            }
+            return hits;
+        }
+
+        @Override
+        public void parseRequest(Map<String, Object> sourceAsMap) {
+        }
+    }
+}
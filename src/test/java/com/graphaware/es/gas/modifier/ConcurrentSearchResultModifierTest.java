@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.stubs.BatchedSearchResultTestModifier;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hits;
+import static org.junit.Assert.*;
+
+public class ConcurrentSearchResultModifierTest {
+
+    @Test
+    public void testLookupsRunConcurrentlyAndModifiersInOrder() {
+        //each lookup waits for the other one, so they can only complete if they run at the same time
+        CountDownLatch started = new CountDownLatch(2);
+        List<String> applied = new ArrayList<>();
+        BatchedSearchResultTestModifier booster = new BatchedSearchResultTestModifier("booster", applied).awaiting(started);
+        BatchedSearchResultTestModifier filter = new BatchedSearchResultTestModifier("filter", applied).awaiting(started);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ConcurrentSearchResultModifier modifier = new ConcurrentSearchResultModifier(Arrays.<SearchResultModifier>asList(new PrivilegedSearchResultModifier(booster), filter), executor);
+            modifier.modify(hits("1", "2"));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), booster.getFetched());
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), filter.getFetched());
+        assertEquals(Arrays.asList("booster", "filter"), applied);
+    }
+
+    @Test
+    public void testFailedLookupIsLeftToTheModifier() {
+        List<String> applied = new ArrayList<>();
+        BatchedSearchResultTestModifier booster = new BatchedSearchResultTestModifier("booster", applied).failing();
+        BatchedSearchResultTestModifier filter = new BatchedSearchResultTestModifier("filter", applied);
+
+        new ConcurrentSearchResultModifier(Arrays.<SearchResultModifier>asList(booster, filter), null).modify(hits("1"));
+
+        assertNull(booster.getFetched());
+        assertNotNull(filter.getFetched());
+        assertEquals(Arrays.asList("booster", "filter"), applied);
+    }
+
+    @Test
+    public void testFetchedModifiersAreNotLookedUpAgain() {
+        List<String> applied = new ArrayList<>();
+        BatchedSearchResultTestModifier booster = new BatchedSearchResultTestModifier("booster", applied);
+        BatchedSearchResultTestModifier filter = new BatchedSearchResultTestModifier("filter", applied);
+        filter.setFetched(new HashSet<String>());
+
+        new ConcurrentSearchResultModifier(Arrays.<SearchResultModifier>asList(booster, filter), null).modify(hits("1"));
+
+        assertNull(booster.getFetched());
+        assertEquals(0, filter.getLookups());
+    }
+
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.domain.TestIndexInfo;
+import com.graphaware.es.gas.modifier.IndexGroupedSearchResultModifier.IndexGroup;
+import com.graphaware.es.gas.stubs.TestSearchHits;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class IndexGroupedSearchResultModifierTest {
+
+    @Test
+    public void testGroupsAreModifiedSeparatelyAndMerged() {
+        IndexGroup boosted = new IndexGroup(TestIndexInfo.newInstance(), Arrays.asList("logs-1", "logs-2"), Collections.<SearchResultModifier>singletonList(new MultiplyingModifier(10)));
+        IndexGroup untouched = new IndexGroup(TestIndexInfo.newInstance(), Collections.singletonList("other"), Collections.<SearchResultModifier>emptyList());
+        Executor executor = Executors.newSingleThreadExecutor();
+
+        IndexGroupedSearchResultModifier modifier = new IndexGroupedSearchResultModifier(Arrays.asList(boosted, untouched), executor, 2, 1);
+        InternalSearchHits result = modifier.modify(hits(hit("1", "logs-1", 1), hit("2", "logs-2", 2), hit("3", "other", 15), hit("4", "other", 5)));
+
+        assertEquals(4, result.totalHits());
+        assertEquals(2, result.internalHits().length);
+        assertEquals("3", result.internalHits()[0].getId());
+        assertEquals("1", result.internalHits()[1].getId());
+        assertEquals(20, result.maxScore(), 0);
+    }
+
+    @Test
+    public void testPageAfterLastHitIsEmpty() {
+        IndexGroup group = new IndexGroup(TestIndexInfo.newInstance(), Collections.singletonList("logs-1"), Collections.<SearchResultModifier>emptyList());
+
+        IndexGroupedSearchResultModifier modifier = new IndexGroupedSearchResultModifier(Collections.singletonList(group), null, 10, 5);
+        InternalSearchHits result = modifier.modify(hits(hit("1", "logs-1", 1)));
+
+        assertEquals(0, result.internalHits().length);
+        assertEquals(1, result.totalHits());
+    }
+
+    private InternalSearchHits hits(InternalSearchHit... hits) {
+        return new InternalSearchHits(hits, hits.length, 0);
+    }
+
+    private InternalSearchHit hit(String id, String index, float score) {
+        InternalSearchHit hit = TestSearchHits.hit(id, score);
+        hit.shard(new SearchShardTarget("node", index, 0));
+        return hit;
+    }
+
+    private static class MultiplyingModifier implements SearchResultModifier {
+
+        private final float factor;
+
+        MultiplyingModifier(float factor) {
+            this.factor = factor;
+        }
+
+        @Override
+        public InternalSearchHits modify(InternalSearchHits hits) {
+            for (InternalSearchHit hit : hits.internalHits()) {
+                hit.score(hit.score() * factor);
+            }
+            return hits;
+        }
+
+        @Override
+        public void parseRequest(Map<String, Object> sourceAsMap) {
+        }
+    }
+}
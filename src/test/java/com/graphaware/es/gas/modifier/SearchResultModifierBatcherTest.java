@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.modifier;
+
+import com.graphaware.es.gas.stubs.BatchedSearchResultTestModifier;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hits;
+import static org.junit.Assert.*;
+
+public class SearchResultModifierBatcherTest {
+
+    @Test
+    public void testModifiersWithSameKeyShareOneLookup() {
+        BatchedSearchResultTestModifier first = new BatchedSearchResultTestModifier("neo4j|query");
+        BatchedSearchResultTestModifier second = new BatchedSearchResultTestModifier("neo4j|query");
+        BatchedSearchResultTestModifier other = new BatchedSearchResultTestModifier("neo4j|other");
+
+        SearchResultModifierBatcher batcher = new SearchResultModifierBatcher(Settings.EMPTY);
+        batcher.add(Collections.<SearchResultModifier>singletonList(new PrivilegedSearchResultModifier(first)), hits("1", "2"));
+        batcher.add(Collections.<SearchResultModifier>singletonList(second), hits("2", "3"));
+        batcher.add(Collections.<SearchResultModifier>singletonList(other), hits("4"));
+
+        assertEquals(1, batcher.execute());
+        assertEquals(1, first.getLookups() + second.getLookups());
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), first.getFetched());
+        assertSame(first.getFetched(), second.getFetched());
+        assertEquals(0, other.getLookups());
+        assertNull(other.getFetched());
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToIndividualLookups() {
+        BatchedSearchResultTestModifier first = new BatchedSearchResultTestModifier("key").failing();
+        BatchedSearchResultTestModifier second = new BatchedSearchResultTestModifier("key").failing();
+
+        SearchResultModifierBatcher batcher = new SearchResultModifierBatcher(Settings.EMPTY);
+        batcher.add(Collections.<SearchResultModifier>singletonList(first), hits("1"));
+        batcher.add(Collections.<SearchResultModifier>singletonList(second), hits("2"));
+
+        assertEquals(0, batcher.execute());
+        assertNull(first.getFetched());
+        assertNull(second.getFetched());
+    }
+
+
+}
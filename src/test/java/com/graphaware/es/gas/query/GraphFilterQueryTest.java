@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GraphFilterQueryTest {
+
+    private static final List<String> TYPES = Collections.singletonList("movie");
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private GraphFilterCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+            for (int i = 0; i < 5; i++) {
+                Document document = new Document();
+                document.add(new StringField("_uid", "movie#" + i, Field.Store.YES));
+                writer.addDocument(document);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        cache = new GraphFilterCache(Settings.EMPTY);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testIncludedIdsAreMatched() throws IOException {
+        Set<String> ids = new HashSet<>(Arrays.asList("1", "3", "42"));
+
+        assertEquals(new HashSet<>(Arrays.asList("1", "3")), search(new GraphFilterQuery("blocked", ids, TYPES, false, cache)));
+    }
+
+    @Test
+    public void testExcludedIdsAreNotMatched() throws IOException {
+        Set<String> ids = new HashSet<>(Arrays.asList("1", "3"));
+
+        assertEquals(new HashSet<>(Arrays.asList("0", "2", "4")), search(new GraphFilterQuery("blocked", ids, TYPES, true, cache)));
+    }
+
+    @Test
+    public void testBitsetIsBuiltOncePerSegment() throws IOException {
+        Set<String> ids = Collections.singleton("2");
+        search(new GraphFilterQuery("blocked", ids, TYPES, false, cache));
+
+        LeafReader leaf = reader.leaves().get(0).reader();
+        FixedBitSet bits = cache.get(leaf, ids, "false:" + TYPES);
+        assertNotNull(bits);
+        assertSame(bits, new GraphFilterQuery("blocked", ids, TYPES, false, cache).bits(leaf));
+        assertNull(cache.get(leaf, new HashSet<>(ids), "false:" + TYPES));
+    }
+
+    @Test
+    public void testBitsetsAreDroppedWithTheirSegment() throws IOException {
+        search(new GraphFilterQuery("blocked", Collections.singleton("2"), TYPES, false, cache));
+        assertEquals(1, cache.segmentCount());
+
+        reader.close();
+        reader = DirectoryReader.open(directory);
+
+        assertEquals(0, cache.segmentCount());
+    }
+
+    @Test
+    public void testQueriesOnDifferentSetsAreNotEqual() {
+        Set<String> ids = Collections.singleton("2");
+
+        assertEquals(new GraphFilterQuery("blocked", ids, TYPES, false, cache), new GraphFilterQuery("blocked", ids, TYPES, false, cache));
+        assertNotEquals(new GraphFilterQuery("blocked", ids, TYPES, false, cache), new GraphFilterQuery("blocked", new HashSet<>(ids), TYPES, false, cache));
+        assertNotEquals(new GraphFilterQuery("blocked", ids, TYPES, false, cache), new GraphFilterQuery("blocked", ids, TYPES, true, cache));
+    }
+
+    private Set<String> search(GraphFilterQuery query) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        TopDocs docs = searcher.search(query, 10);
+        Set<String> ids = new HashSet<>();
+        for (ScoreDoc scoreDoc : docs.scoreDocs) {
+            ids.add(searcher.doc(scoreDoc.doc).get("_uid").substring("movie#".length()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.query;
+
+import com.graphaware.es.gas.materialized.GraphScoreFile;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.search.function.LeafScoreFunction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GraphScoreFunctionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private GraphScoreFile scores;
+    private SegmentCache<float[]> cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+            for (int i = 0; i < 4; i++) {
+                Document document = new Document();
+                document.add(new StringField("_uid", "movie#" + i, Field.Store.YES));
+                writer.addDocument(document);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+
+        Map<String, Float> values = new HashMap<>();
+        values.put("1", 2.5f);
+        values.put("3", 0.5f);
+        values.put("42", 9f);
+        Path file = folder.getRoot().toPath().resolve("popular.scores");
+        GraphScoreFile.write(file, values);
+        scores = GraphScoreFile.open(file);
+        cache = new SegmentCache<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testDocumentsAreScoredFromTheMaterializedScores() throws IOException {
+        LeafScoreFunction function = new GraphScoreFunction("popular", scores, 0f, cache).getLeafScoreFunction(leaf());
+
+        assertEquals(0, function.score(0, 1f), 0);
+        assertEquals(2.5, function.score(1, 1f), 0);
+        assertEquals(0, function.score(2, 1f), 0);
+        assertEquals(0.5, function.score(3, 1f), 0);
+    }
+
+    @Test
+    public void testMissingScoreIsConfigurable() throws IOException {
+        LeafScoreFunction function = new GraphScoreFunction("popular", scores, 1f, cache).getLeafScoreFunction(leaf());
+
+        assertEquals(1, function.score(0, 1f), 0);
+        assertEquals(2.5, function.score(1, 1f), 0);
+    }
+
+    @Test
+    public void testScoresAreLookedUpOncePerSegment() throws IOException {
+        float[] segmentScores = new GraphScoreFunction("popular", scores, 0f, cache).scores(leaf().reader());
+
+        assertSame(segmentScores, new GraphScoreFunction("popular", scores, 0f, cache).scores(leaf().reader()));
+        assertNotSame(segmentScores, new GraphScoreFunction("popular", scores, 1f, cache).scores(leaf().reader()));
+        assertEquals(1, cache.segmentCount());
+
+        reader.close();
+        reader = DirectoryReader.open(directory);
+        assertEquals(0, cache.segmentCount());
+    }
+
+    private LeafReaderContext leaf() {
+        return reader.leaves().get(0);
+    }
+}
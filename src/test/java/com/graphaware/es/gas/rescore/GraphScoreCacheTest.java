@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GraphScoreCacheTest {
+
+    @Test
+    public void testScoresAreLoadedOncePerLookupKey() {
+        GraphScoreCache cache = new GraphScoreCache(Settings.EMPTY);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(2f, cache.get("booster-1", loader(loads)).get("1"), 0.001f);
+        assertEquals(2f, cache.get("booster-1", loader(loads)).get("1"), 0.001f);
+        assertEquals(1, loads.get());
+
+        cache.get("booster-2", loader(loads));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testOversizedScoresAreLoadedOnceAndNotReturned() {
+        GraphScoreCache cache = new GraphScoreCache(Settings.builder().put(GraphScoreCache.MAX_SCORES, 1).build());
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Map<String, Float>> loader = new Callable<Map<String, Float>>() {
+            @Override
+            public Map<String, Float> call() {
+                loads.incrementAndGet();
+                Map<String, Float> scores = new HashMap<>();
+                scores.put("1", 2f);
+                scores.put("2", 3f);
+                return scores;
+            }
+        };
+
+        assertNull(cache.get("booster-1", loader));
+        assertNull(cache.get("booster-1", loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        GraphScoreCache cache = new GraphScoreCache(Settings.EMPTY);
+        try {
+            cache.get("booster-1", new Callable<Map<String, Float>>() {
+                @Override
+                public Map<String, Float> call() {
+                    throw new IllegalStateException("Neo4j is down");
+                }
+            });
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    private static Callable<Map<String, Float>> loader(final AtomicInteger loads) {
+        return new Callable<Map<String, Float>>() {
+            @Override
+            public Map<String, Float> call() {
+                loads.incrementAndGet();
+                return Collections.singletonMap("1", 2f);
+            }
+        };
+    }
+}
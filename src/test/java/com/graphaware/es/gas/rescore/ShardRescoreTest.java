@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.rescore;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static org.junit.Assert.*;
+
+public class ShardRescoreTest {
+
+    @Test
+    public void testOnlyShardEngineIsRequested() {
+        assertFalse(ShardRescore.isRequested(source(null)));
+        assertFalse(ShardRescore.isRequested(new HashMap<String, Object>()));
+        assertTrue(ShardRescore.isRequested(source(SHARD_ENGINE)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBoosterIsReplacedByRescore() {
+        Map<String, Object> source = source(SHARD_ENGINE);
+        Map<String, Object> query = Collections.<String, Object>singletonMap("match", Collections.singletonMap("message", "test"));
+        source.put(QUERY, query);
+
+        ShardRescore.rewrite(source, "test-index", 10, 5, Collections.singletonMap("1", 2f));
+
+        assertFalse(source.containsKey(GAS_BOOSTER_CLAUSE));
+        Map<String, Object> rescore = (Map<String, Object>) source.get(RESCORE);
+        assertEquals(15, rescore.get("window_size"));
+
+        Map<String, Object> rescoreQuery = (Map<String, Object>) rescore.get(QUERY);
+        Map<String, Object> functionScore = (Map<String, Object>) ((Map<String, Object>) rescoreQuery.get("rescore_query")).get("function_score");
+        assertSame(query, functionScore.get(QUERY));
+
+        Map<String, Object> script = (Map<String, Object>) ((Map<String, Object>) functionScore.get("script_score")).get("script");
+        assertEquals(GraphScoreScriptFactory.NAME, script.get("inline"));
+        Map<String, Object> params = (Map<String, Object>) script.get("params");
+        assertEquals("test-index", params.get(GraphScoreScriptFactory.INDEX_PARAM));
+        Map<String, Object> booster = (Map<String, Object>) params.get(GraphScoreScriptFactory.BOOSTER_PARAM);
+        assertEquals("MATCH (n) RETURN n", booster.get(QUERY));
+        assertFalse(booster.containsKey(ENGINE));
+        assertEquals(Collections.singletonMap("1", 2f), params.get(GraphScoreScriptFactory.SCORES_PARAM));
+    }
+
+    @Test
+    public void testShardEngineIsDetectedInTheSourceBytes() {
+        assertTrue(ShardRescore.isRequested(new BytesArray("{\"gas-booster\": {\"engine\": \"shard\"}}")));
+        assertFalse(ShardRescore.isRequested(new BytesArray("{\"gas-booster\": {\"name\": \"SearchResultCypherBooster\"}}")));
+        assertFalse(ShardRescore.isRequested((BytesReference) null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoordinatedBoosterLosesTheShardParameters() {
+        Map<String, Object> source = source(SHARD_ENGINE);
+        ((Map<String, Object>) source.get(GAS_BOOSTER_CLAUSE)).put(WINDOW_SIZE, 100);
+
+        ShardRescore.coordinate(source);
+
+        Map<String, Object> booster = (Map<String, Object>) source.get(GAS_BOOSTER_CLAUSE);
+        assertFalse(ShardRescore.isRequested(source));
+        assertFalse(booster.containsKey(WINDOW_SIZE));
+        assertEquals("MATCH (n) RETURN n", booster.get(QUERY));
+        assertFalse(source.containsKey(RESCORE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGraphRescoreRunsBeforeRequestRescore() {
+        Map<String, Object> source = source(SHARD_ENGINE);
+        Map<String, Object> existing = new HashMap<>();
+        source.put(RESCORE, existing);
+        ((Map<String, Object>) source.get(GAS_BOOSTER_CLAUSE)).put(WINDOW_SIZE, 100);
+
+        ShardRescore.rewrite(source, "test-index", 10, 0, Collections.<String, Float>emptyMap());
+
+        List<Object> rescores = (List<Object>) source.get(RESCORE);
+        assertEquals(2, rescores.size());
+        assertEquals(100, ((Map<String, Object>) rescores.get(0)).get("window_size"));
+        assertSame(existing, rescores.get(1));
+    }
+
+    private Map<String, Object> source(String engine) {
+        Map<String, Object> booster = new HashMap<>();
+        booster.put(NAME, ShardRescore.BOOSTER);
+        booster.put(QUERY, "MATCH (n) RETURN n");
+        if (engine != null) {
+            booster.put(ENGINE, engine);
+        }
+        Map<String, Object> source = new HashMap<>();
+        source.put(GAS_BOOSTER_CLAUSE, booster);
+        return source;
+    }
+}
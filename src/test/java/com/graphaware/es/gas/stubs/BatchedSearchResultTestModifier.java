@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.stubs;
+
+import com.graphaware.es.gas.modifier.BatchedSearchResultModifier;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched modifier whose lookup returns the looked up ids, or only the kept ones. It records its lookups and, in the
+ * given list, the order in which the modifiers are applied.
+ */
+public class BatchedSearchResultTestModifier implements BatchedSearchResultModifier<Set<String>> {
+
+    private final String key;
+    private final List<String> applied;
+    private Set<String> kept;
+    private boolean failing;
+    private CountDownLatch started;
+    private int lookups;
+    private Set<String> fetched;
+
+    public BatchedSearchResultTestModifier(String key) {
+        this(key, new ArrayList<String>());
+    }
+
+    public BatchedSearchResultTestModifier(String key, List<String> applied) {
+        this.key = key;
+        this.applied = applied;
+    }
+
+    /**
+     * Lookups only return these ids and {@link #modify(InternalSearchHits)} drops the other hits.
+     */
+    public BatchedSearchResultTestModifier keeping(String... ids) {
+        this.kept = new HashSet<>(Arrays.asList(ids));
+        return this;
+    }
+
+    public BatchedSearchResultTestModifier failing() {
+        this.failing = true;
+        return this;
+    }
+
+    /**
+     * Each lookup counts the latch down and waits for the other ones, so they only complete when run at the same time.
+     */
+    public BatchedSearchResultTestModifier awaiting(CountDownLatch started) {
+        this.started = started;
+        return this;
+    }
+
+    public int getLookups() {
+        return lookups;
+    }
+
+    public Set<String> getFetched() {
+        return fetched;
+    }
+
+    @Override
+    public String getBatchKey() {
+        return key;
+    }
+
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    @Override
+    public Set<String> fetch(Set<String> ids) {
+        lookups++;
+        if (failing) {
+            throw new RuntimeException("Neo4j unavailable");
+        }
+        if (started != null) {
+            started.countDown();
+            try {
+                if (!started.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("The other lookups did not start");
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return kept != null ? kept : new HashSet<>(ids);
+    }
+
+    @Override
+    public void setFetched(Set<String> result) {
+        fetched = result;
+    }
+
+    @Override
+    public boolean isFetched() {
+        return fetched != null;
+    }
+
+    @Override
+    public InternalSearchHits modify(InternalSearchHits hits) {
+        applied.add(key);
+        if (kept == null) {
+            return hits;
+        }
+        List<InternalSearchHit> result = new ArrayList<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            if (kept.contains(hit.getId())) {
+                result.add(hit);
+            }
+        }
+        return new InternalSearchHits(result.toArray(new InternalSearchHit[result.size()]), result.size(), hits.maxScore());
+    }
+
+    @Override
+    public void parseRequest(Map<String, Object> sourceAsMap) {
+    }
+}
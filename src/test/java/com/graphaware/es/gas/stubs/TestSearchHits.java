@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.stubs;
+
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+
+import java.util.HashMap;
+
+/**
+ * Search hits for the unit tests of the modifiers.
+ */
+public final class TestSearchHits {
+
+    private TestSearchHits() {
+    }
+
+    public static InternalSearchHit hit(String id) {
+        return new InternalSearchHit(0, id, new Text("Movie"), new HashMap<String, SearchHitField>());
+    }
+
+    public static InternalSearchHit hit(String id, float score) {
+        InternalSearchHit hit = hit(id);
+        hit.score(score);
+        return hit;
+    }
+
+    /**
+     * @return hits in the given order, all scored 1.
+     */
+    public static InternalSearchHits hits(String... ids) {
+        InternalSearchHit[] hits = new InternalSearchHit[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            hits[i] = new InternalSearchHit(i, ids[i], new Text("Movie"), new HashMap<String, SearchHitField>());
+            hits[i].score(1);
+        }
+        return new InternalSearchHits(hits, hits.length, 1);
+    }
+}
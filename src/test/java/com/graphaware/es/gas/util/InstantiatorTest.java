@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.util;
+
+import com.graphaware.es.gas.annotation.SearchBooster;
+import com.graphaware.es.gas.booster.SearchResultBooster;
+import com.graphaware.es.gas.domain.IndexInfo;
+import com.graphaware.es.gas.domain.TestIndexInfo;
+import com.graphaware.es.gas.stubs.SearchResultTestBooster;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static org.junit.Assert.*;
+
+public class InstantiatorTest {
+
+    private final Instantiator instantiator = new Instantiator(Settings.EMPTY);
+    private final IndexInfo indexInfo = TestIndexInfo.newInstance();
+
+    @Test
+    public void testRepeatedClauseGetsFreshModifierWithSameRequestChanges() {
+        Map<String, Object> first = source(50);
+        SearchResultBooster booster1 = instantiator.instantiate(GAS_BOOSTER_CLAUSE, first, indexInfo, SearchResultBooster.class, SearchBooster.class);
+        Map<String, Object> second = source(50);
+        SearchResultBooster booster2 = instantiator.instantiate(GAS_BOOSTER_CLAUSE, second, indexInfo, SearchResultBooster.class, SearchBooster.class);
+
+        assertTrue(booster1 instanceof SearchResultTestBooster);
+        assertTrue(booster2 instanceof SearchResultTestBooster);
+        assertNotSame(booster1, booster2);
+        assertEquals(first, second);
+        assertEquals(50, second.get(SIZE));
+        assertEquals(0, second.get(FROM));
+        assertFalse(second.containsKey(GAS_BOOSTER_CLAUSE));
+        assertEquals(((SearchResultTestBooster) booster1).getMaxResultSize(), ((SearchResultTestBooster) booster2).getMaxResultSize());
+    }
+
+    @Test
+    public void testDifferentParamsAreParsedAgain() {
+        instantiator.instantiate(GAS_BOOSTER_CLAUSE, source(50), indexInfo, SearchResultBooster.class, SearchBooster.class);
+        Map<String, Object> other = source(20);
+        SearchResultBooster booster = instantiator.instantiate(GAS_BOOSTER_CLAUSE, other, indexInfo, SearchResultBooster.class, SearchBooster.class);
+
+        assertEquals(20, ((SearchResultTestBooster) booster).getMaxResultSize());
+        assertEquals(20, other.get(SIZE));
+    }
+
+    @Test
+    public void testUnknownModifierIsNull() {
+        Map<String, Object> source = source(50);
+        ((Map<String, Object>) source.get(GAS_BOOSTER_CLAUSE)).put(NAME, "Unknown");
+
+        assertNull(instantiator.instantiate(GAS_BOOSTER_CLAUSE, source, indexInfo, SearchResultBooster.class, SearchBooster.class));
+        assertFalse(source.containsKey(GAS_BOOSTER_CLAUSE));
+    }
+
+    private Map<String, Object> source(int maxResultSize) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(NAME, "SearchResultTestBooster");
+        params.put(MAX_RESULT_SIZE, String.valueOf(maxResultSize));
+        Map<String, Object> source = new HashMap<>();
+        source.put(SIZE, 10);
+        source.put(FROM, 5);
+        source.put(GAS_BOOSTER_CLAUSE, params);
+        return source;
+    }
+}
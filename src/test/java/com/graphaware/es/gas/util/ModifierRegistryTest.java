@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.util;
+
+import com.graphaware.es.gas.annotation.SearchBooster;
+import com.graphaware.es.gas.annotation.SearchFilter;
+import com.graphaware.es.gas.booster.SearchResultBooster;
+import com.graphaware.es.gas.booster.SearchResultCypherBooster;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import com.graphaware.es.gas.filter.SearchResultFilter;
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ModifierRegistryTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testEveryAnnotatedClassIsIndexed() {
+        Reflections reflections = new Reflections("com.graphaware.es.gas");
+        //only the classes carrying the annotation themselves, not their subclasses
+        Set<Class<?>> annotated = new HashSet<>(reflections.getTypesAnnotatedWith(SearchBooster.class, true));
+        annotated.addAll(reflections.getTypesAnnotatedWith(SearchFilter.class, true));
+        List<String> indexed = ModifierRegistry.readIndex(classLoader);
+
+        for (Class<?> cls : annotated) {
+            assertTrue(cls.getName() + " is missing from " + ModifierRegistry.INDEX_RESOURCE, indexed.contains(cls.getName()));
+        }
+    }
+
+    @Test
+    public void testLookupIsCaseInsensitiveAndTyped() {
+        ModifierRegistry registry = ModifierRegistry.load(classLoader);
+
+        assertEquals(SearchResultCypherBooster.class, registry.get(SearchBooster.class, SearchResultBooster.class, "searchresultcypherbooster").getDeclaringClass());
+        assertEquals(SearchResultCypherFilter.class, registry.get(SearchFilter.class, SearchResultFilter.class, "SearchResultCypherFilter").getDeclaringClass());
+        assertNull(registry.get(SearchBooster.class, SearchResultBooster.class, "SearchResultCypherFilter"));
+        assertNull(registry.get(SearchFilter.class, SearchResultBooster.class, "SearchResultCypherFilter"));
+        assertNull(registry.get(SearchBooster.class, SearchResultBooster.class, "Unknown"));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.warmup;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchWarmerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTemplatesSurviveRestart() {
+        Path path = folder.getRoot().toPath().resolve("gas").resolve("warmup");
+        SearchWarmer warmer = new SearchWarmer(Settings.EMPTY, null, path);
+        warmer.record(new String[]{"movies", "users"}, new BytesArray("{\n  \"query\": {\"match_all\": {}},\n  \"gas-booster\": {\"name\": \"SearchResultCypherBooster\"}\n}"));
+        warmer.save();
+
+        SearchWarmer restarted = new SearchWarmer(Settings.EMPTY, null, path);
+        restarted.load();
+
+        List<WarmupTemplate> templates = restarted.getTemplates();
+        assertEquals(1, templates.size());
+        assertArrayEquals(new String[]{"movies", "users"}, templates.get(0).getIndices());
+        assertEquals("{\"query\":{\"match_all\":{}},\"gas-booster\":{\"name\":\"SearchResultCypherBooster\"}}", templates.get(0).getSource());
+    }
+
+    @Test
+    public void testOnlyMostRecentTemplatesAreKept() {
+        SearchWarmer warmer = new SearchWarmer(Settings.builder().put(SearchWarmer.WARMUP_SIZE, 2).build(), null, folder.getRoot().toPath().resolve("warmup"));
+        warmer.record(new String[]{"movies"}, new BytesArray("{\"size\":1}"));
+        warmer.record(new String[]{"movies"}, new BytesArray("{\"size\":2}"));
+        warmer.record(new String[]{"movies"}, new BytesArray("{\"size\":1}"));
+        warmer.record(new String[]{"movies"}, new BytesArray("{\"size\":3}"));
+
+        List<WarmupTemplate> templates = warmer.getTemplates();
+        assertEquals(2, templates.size());
+        assertEquals("{\"size\":1}", templates.get(0).getSource());
+        assertEquals("{\"size\":3}", templates.get(1).getSource());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.TestIndexInfo;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GraphAidedScrollsTest {
+
+    @Test
+    public void testScrollIsKeptAlive() {
+        GraphAidedScrolls scrolls = new GraphAidedScrolls();
+        GraphAidedScroll scroll = newScroll(new Scroll(TimeValue.timeValueMinutes(1)));
+        scrolls.register("scroll-1", scroll);
+
+        assertSame(scroll, scrolls.get("scroll-1"));
+        assertNull(scrolls.get("scroll-2"));
+    }
+
+    @Test
+    public void testExpiredScrollIsRemoved() throws InterruptedException {
+        GraphAidedScrolls scrolls = new GraphAidedScrolls();
+        scrolls.register("scroll-1", newScroll(new Scroll(TimeValue.timeValueMillis(1))));
+
+        Thread.sleep(10);
+
+        assertNull(scrolls.get("scroll-1"));
+        assertEquals(0, scrolls.size());
+    }
+
+    @Test
+    public void testDefaultKeepAlive() {
+        GraphAidedScroll scroll = newScroll(null);
+        assertEquals(GraphAidedScroll.DEFAULT_KEEP_ALIVE, scroll.getKeepAlive());
+
+        scroll.keepAlive(new Scroll(TimeValue.timeValueSeconds(30)));
+        assertEquals(TimeValue.timeValueSeconds(30), scroll.getKeepAlive());
+    }
+
+    @Test
+    public void testClearedScrollIsRemoved() {
+        GraphAidedScrolls scrolls = new GraphAidedScrolls();
+        scrolls.register("scroll-1", newScroll(null));
+        scrolls.register("scroll-2", newScroll(null));
+
+        scrolls.clear("scroll-1");
+        assertNull(scrolls.get("scroll-1"));
+        assertEquals(1, scrolls.size());
+
+        scrolls.clearAll();
+        assertEquals(0, scrolls.size());
+    }
+
+    @Test
+    public void testStateIsCarriedByTheScrollId() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("indices", Collections.singletonList("index"));
+        state.put("gas-filter", Collections.singletonMap("query", "MATCH (n:Blocked) RETURN n.id AS id"));
+        String scrollId = GraphAidedScrolls.encode("c2Nhbi_0-1", GraphAidedScrolls.state(state));
+
+        String[] decoded = GraphAidedScrolls.decode(scrollId);
+        assertEquals("c2Nhbi_0-1", decoded[1]);
+        assertEquals(state, GraphAidedScrolls.state(decoded[0]));
+    }
+
+    @Test
+    public void testPlainScrollIdIsNotDecoded() {
+        assertNull(GraphAidedScrolls.decode("c2Nhbi_0-1"));
+        assertNull(GraphAidedScrolls.decode(null));
+    }
+
+    private GraphAidedScroll newScroll(Scroll keepAlive) {
+        return new GraphAidedScroll(Collections.<SearchResultModifier>emptyList(), TestIndexInfo.newInstance(), keepAlive, null);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.IndexInfo;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.*;
+import static org.junit.Assert.*;
+
+public class IndexInfosTest {
+
+    @Test
+    public void testIndicesAndAliasesAreResolvedFromMetaData() {
+        IndexInfos indexInfos = new IndexInfos();
+        MetaData metaData = metaData(1, "http://localhost:7474");
+        indexInfos.update(metaData);
+
+        IndexInfo indexInfo = indexInfos.get("graph", metaData);
+        assertEquals("http://localhost:7474", indexInfo.getNeo4jHost());
+        assertTrue(indexInfo.isEnabled());
+        assertSame(indexInfo, indexInfos.get("graph-alias", metaData));
+        assertSame(IndexInfo.NO_SCRIPT_INFO, indexInfos.get("plain", metaData));
+        assertSame(IndexInfo.NO_SCRIPT_INFO, indexInfos.get("missing", metaData));
+    }
+
+    @Test
+    public void testSettingsChangeAppliesOnUpdate() {
+        IndexInfos indexInfos = new IndexInfos();
+        indexInfos.update(metaData(1, "http://localhost:7474"));
+        MetaData changed = metaData(2, "http://neo4j:7474");
+        indexInfos.update(changed);
+
+        assertEquals("http://neo4j:7474", indexInfos.get("graph", changed).getNeo4jHost());
+    }
+
+    @Test
+    public void testIndexUnknownToListenerIsLookedUpInNewerMetaData() {
+        IndexInfos indexInfos = new IndexInfos();
+        indexInfos.update(MetaData.builder().version(1).build());
+        MetaData newer = metaData(2, "http://localhost:7474");
+
+        assertEquals("http://localhost:7474", indexInfos.get("graph", newer).getNeo4jHost());
+        assertSame(IndexInfo.NO_SCRIPT_INFO, indexInfos.get("plain", newer));
+    }
+
+    private MetaData metaData(long version, String host) {
+        Settings graph = settings()
+                .put(INDEX_GA_ES_NEO4J_HOST, host)
+                .put(INDEX_GA_ES_NEO4J_ENABLED, true)
+                .build();
+        return MetaData.builder()
+                .version(version)
+                .put(IndexMetaData.builder("graph").settings(graph).putAlias(AliasMetaData.builder("graph-alias")))
+                .put(IndexMetaData.builder("plain").settings(settings().build()))
+                .build();
+    }
+
+    private Settings.Builder settings() {
+        return Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.TestIndexInfo;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
+import static org.junit.Assert.*;
+
+public class PrefilterTest {
+
+    @Test
+    public void testPrefilterIsRequestedByAnyFilterClause() {
+        Map<String, Object> source = new HashMap<>();
+        assertFalse(Prefilter.isRequested(source));
+
+        source.put("gas-filter", filterClause(false));
+        assertFalse(Prefilter.isRequested(source));
+
+        source.put("gas-filter", Arrays.asList(filterClause(false), filterClause(true)));
+        assertTrue(Prefilter.isRequested(source));
+    }
+
+    @Test
+    public void testPrefilterIsDetectedInTheSourceBytes() throws Exception {
+        assertTrue(Prefilter.isRequested(XContentFactory.jsonBuilder().map(getDefaultMap(true)).bytes()));
+        assertTrue(Prefilter.isRequested(XContentFactory.smileBuilder().map(getDefaultMap(true)).bytes()));
+
+        Map<String, Object> source = getDefaultMap(true);
+        ((Map<String, Object>) source.get("gas-filter")).remove("prefilter");
+        assertFalse(Prefilter.isRequested(XContentFactory.jsonBuilder().map(source).bytes()));
+        assertFalse(Prefilter.isRequested(XContentFactory.smileBuilder().map(source).bytes()));
+        assertFalse(Prefilter.isRequested((BytesReference) null));
+    }
+
+    @Test
+    public void testExcludedIdsAreAddedAsMustNot() {
+        Map<String, Object> source = getDefaultMap(true);
+        Map<String, Object> query = (Map<String, Object>) source.get("query");
+        CountingFilter filter = filter(source, "1", "2");
+
+        assertTrue(new Prefilter(Settings.EMPTY).inject(filter, source));
+
+        Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) source.get("query")).get("bool");
+        assertSame(query, bool.get("must"));
+        Map<String, Object> ids = (Map<String, Object>) ((Map<String, Object>) bool.get("must_not")).get("ids");
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), new HashSet<>((List<String>) ids.get("values")));
+        assertFalse(bool.containsKey("filter"));
+    }
+
+    @Test
+    public void testIncludedIdsAreAddedAsFilter() {
+        Map<String, Object> source = getDefaultMap(false);
+        source.remove("query");
+        CountingFilter filter = filter(source, "3");
+
+        assertTrue(new Prefilter(Settings.EMPTY).inject(filter, source));
+
+        Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) source.get("query")).get("bool");
+        assertEquals(Collections.singletonMap("match_all", Collections.emptyMap()), bool.get("must"));
+        assertTrue(bool.containsKey("filter"));
+        assertFalse(bool.containsKey("must_not"));
+    }
+
+    @Test
+    public void testLargeSetsAreKeptForTheHits() {
+        Map<String, Object> source = getDefaultMap(true);
+        Map<String, Object> query = (Map<String, Object>) source.get("query");
+        CountingFilter filter = filter(source, "1", "2", "3");
+
+        assertFalse(new Prefilter(Settings.builder().put(Prefilter.MAX_TERMS, 2).build()).inject(filter, source));
+
+        assertSame(query, source.get("query"));
+        assertTrue(filter.isFetched());
+    }
+
+    @Test
+    public void testFilterSetIsCachedByBatchKey() {
+        Prefilter prefilter = new Prefilter(Settings.EMPTY);
+        Map<String, Object> source = getDefaultMap(true);
+        CountingFilter filter = filter(source, "1");
+        assertTrue(prefilter.inject(filter, source));
+
+        Map<String, Object> other = getDefaultMap(true);
+        CountingFilter otherFilter = filter(other, "1");
+        assertTrue(prefilter.inject(otherFilter, other));
+
+        assertEquals(1, filter.calls);
+        assertEquals(0, otherFilter.calls);
+    }
+
+    @Test
+    public void testFilterSetIsNotCachedWhenDisabled() {
+        Prefilter prefilter = new Prefilter(Settings.builder().put(Prefilter.CACHE_EXPIRE, "0s").build());
+        Map<String, Object> source = getDefaultMap(true);
+        CountingFilter filter = filter(source, "1");
+        prefilter.inject(filter, source);
+        prefilter.inject(filter, getDefaultMap(true));
+
+        assertEquals(2, filter.calls);
+    }
+
+    @Test
+    public void testNotRequestedFilterIsLeftAlone() {
+        Map<String, Object> source = getDefaultMap(true);
+        ((Map<String, Object>) source.get("gas-filter")).remove("prefilter");
+        Map<String, Object> query = (Map<String, Object>) source.get("query");
+        CountingFilter filter = filter(source, "1");
+
+        assertFalse(new Prefilter(Settings.EMPTY).inject(filter, source));
+        assertSame(query, source.get("query"));
+        assertEquals(0, filter.calls);
+    }
+
+    @Test
+    public void testEmptyPageKeepsFilteredCount() {
+        Map<String, Object> source = getDefaultMap(true);
+        source.put("size", 0);
+        CountingFilter filter = filter(source, "1", "2");
+        assertFalse(new Prefilter(Settings.builder().put(Prefilter.MAX_TERMS, 1).build()).inject(filter, source));
+
+        InternalSearchHits hits = filter.modify(new InternalSearchHits(new InternalSearchHit[]{hit("1"), hit("2"), hit("3"), hit("4")}, 4, 1));
+
+        assertEquals(0, hits.internalHits().length);
+        assertEquals(2, hits.totalHits());
+    }
+
+    @Test
+    public void testLargeSetsOfCountsAreFilteredOnTheShards() {
+        Prefilter prefilter = new Prefilter(Settings.builder().put(Prefilter.MAX_TERMS, 2).build());
+        Map<String, Object> source = getDefaultMap(true);
+        Map<String, Object> query = (Map<String, Object>) source.get("query");
+        CountingFilter filter = filter(source, "1", "2", "3");
+        filter.graphFilterClause = Collections.<String, Object>singletonMap("query", "MATCH (n:Blocked) RETURN n.id AS id");
+
+        assertTrue(prefilter.inject(filter, source, true));
+
+        Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) source.get("query")).get("bool");
+        assertSame(query, bool.get("must"));
+        assertEquals(Collections.singletonMap("graph_filter", filter.graphFilterClause), bool.get("filter"));
+
+        //filters which can't run on the shards are still applied to the hits
+        source = getDefaultMap(true);
+        filter = filter(source, "1", "2", "3");
+        assertFalse(prefilter.inject(filter, source, true));
+        assertTrue(filter.isFetched());
+    }
+
+    @Test
+    public void testGraphFilterClauseOfPlainFilter() {
+        Map<String, Object> source = getDefaultMap(false);
+        SearchResultCypherFilter filter = new SearchResultCypherFilter(Settings.EMPTY, TestIndexInfo.newInstance());
+        filter.parseRequest(source);
+
+        Map<String, Object> clause = filter.getGraphFilterClause();
+        assertEquals("MATCH (n:Blocked) RETURN n.id AS id", clause.get("query"));
+        assertEquals(false, clause.get("exclude"));
+        assertEquals("id", clause.get("identifier"));
+    }
+
+    private static CountingFilter filter(Map<String, Object> source, String... ids) {
+        CountingFilter filter = new CountingFilter(new HashSet<>(Arrays.asList(ids)));
+        filter.parseRequest(source);
+        return filter;
+    }
+
+    private static Map<String, Object> filterClause(boolean prefilter) {
+        Map<String, Object> clause = new HashMap<>();
+        clause.put("query", "MATCH (n:Blocked) RETURN n.id AS id");
+        clause.put("prefilter", prefilter);
+        return clause;
+    }
+
+    private static Map<String, Object> getDefaultMap(boolean exclude) {
+        Map<String, Object> clause = filterClause(true);
+        clause.put("exclude", exclude);
+        Map<String, Object> source = new HashMap<>();
+        source.put("query", Collections.singletonMap("match", Collections.singletonMap("title", "graph")));
+        source.put("gas-filter", new HashMap<>(clause));
+        return source;
+    }
+
+    private static class CountingFilter extends SearchResultCypherFilter {
+
+        private final Set<String> ids;
+        private int calls;
+        private Map<String, Object> graphFilterClause;
+
+        CountingFilter(Set<String> ids) {
+            super(Settings.EMPTY, TestIndexInfo.newInstance());
+            this.ids = ids;
+        }
+
+        @Override
+        protected Set<String> getFilteredItems() {
+            calls++;
+            return ids;
+        }
+
+        @Override
+        public Map<String, Object> getGraphFilterClause() {
+            return graphFilterClause;
+        }
+    }
+}
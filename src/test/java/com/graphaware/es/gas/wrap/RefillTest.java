@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.domain.TestIndexInfo;
+import com.graphaware.es.gas.filter.SearchResultCypherFilter;
+import com.graphaware.es.gas.modifier.PrivilegedSearchResultModifier;
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.client.support.Headers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
+import static org.junit.Assert.*;
+
+public class RefillTest {
+
+    private static final int HITS = 10;
+
+    @Test
+    public void testRefillNeedsRoundsAndAPage() {
+        Map<String, Object> source = getDefaultMap();
+
+        assertFalse(Refill.isPossible(source, 3, 0));
+        assertFalse(Refill.isPossible(source, 0, 5));
+        assertTrue(Refill.isPossible(source, 3, 5));
+
+        source.put("rescore", new HashMap<>());
+        assertFalse(Refill.isPossible(source, 3, 5));
+    }
+
+    @Test
+    public void testRefillNeedsRoomForAnotherWindow() {
+        WindowClient client = new WindowClient();
+        Map<String, Object> source = getDefaultMap();
+        ExcludingFilter filter = new ExcludingFilter(new HashSet<>(Arrays.asList("1", "2")));
+        filter.parseRequest(source);
+
+        final List<InternalSearchHits> collected = new ArrayList<>();
+        Refill.prepare(client, new SearchRequest("index"), source, 3, 0, 2, 5).collect(client.window(0, 2), modifiers(filter), listener(collected));
+
+        assertEquals(0, collected.get(0).internalHits().length);
+        assertEquals(0, client.searches);
+    }
+
+    @Test
+    public void testNextWindowsOnlySearchHits() {
+        Map<String, Object> source = getDefaultMap();
+        source.put("size", 2);
+        source.put("aggs", new HashMap<>());
+        Refill refill = Refill.prepare(null, new SearchRequest("index"), source, 3, 0, 10000, 5);
+
+        Map<String, Object> next = XContentHelper.convertToMap(refill.buildRequest(4, 2).source(), false).v2();
+
+        assertEquals(4, next.get("from"));
+        assertEquals(2, next.get("size"));
+        assertFalse(next.containsKey("aggs"));
+        assertTrue(next.containsKey("query"));
+        assertTrue(source.containsKey("aggs"));
+    }
+
+    @Test
+    public void testWindowsAreSearchedUntilThePageIsFull() {
+        WindowClient client = new WindowClient();
+        ExcludingFilter filter = new ExcludingFilter(new HashSet<>(Arrays.asList("1", "2", "3", "4")));
+        InternalSearchHits page = collect(client, filter, 0, 5);
+
+        //1 to 4 are filtered out, 5 to 8 fill the page of 3
+        assertEquals(Arrays.asList("5", "6", "7"), ids(page));
+        assertEquals(4, page.totalHits());
+        assertEquals(3, client.searches);
+        //every window is filtered once
+        assertEquals(Arrays.asList(2, 2, 2, 2), filter.windows);
+    }
+
+    @Test
+    public void testPageStartsAfterTheFirstSurvivors() {
+        WindowClient client = new WindowClient();
+        ExcludingFilter filter = new ExcludingFilter(new HashSet<>(Arrays.asList("1", "2", "3", "4")));
+        InternalSearchHits page = collect(client, filter, 2, 5);
+
+        assertEquals(Arrays.asList("7", "8", "9"), ids(page));
+        assertEquals(6, page.totalHits());
+        assertEquals(4, client.searches);
+    }
+
+    @Test
+    public void testRoundsAreLimited() {
+        WindowClient client = new WindowClient();
+        ExcludingFilter filter = new ExcludingFilter(new HashSet<>(Arrays.asList("1", "2", "3", "4")));
+        InternalSearchHits page = collect(client, filter, 0, 1);
+
+        assertEquals(Collections.<String>emptyList(), ids(page));
+        assertEquals(0, page.totalHits());
+        assertEquals(1, client.searches);
+    }
+
+    @Test
+    public void testFullPageIsNotRefilled() {
+        WindowClient client = new WindowClient();
+        Map<String, Object> source = getDefaultMap();
+        ExcludingFilter filter = new ExcludingFilter(Collections.<String>emptySet());
+        filter.parseRequest(source);
+
+        final List<InternalSearchHits> collected = new ArrayList<>();
+        Refill.prepare(client, new SearchRequest("index"), source, 2, 0, 10000, 5).collect(client.window(0, 2), modifiers(filter), listener(collected));
+
+        assertEquals(2, collected.get(0).internalHits().length);
+        assertEquals(0, client.searches);
+    }
+
+    private static InternalSearchHits collect(WindowClient client, ExcludingFilter filter, int from, int maxRounds) {
+        Map<String, Object> source = getDefaultMap();
+        filter.parseRequest(source);
+        assertEquals(2, source.get("size"));
+
+        final List<InternalSearchHits> collected = new ArrayList<>();
+        Refill.prepare(client, new SearchRequest("index"), source, 3, from, 10000, maxRounds).collect(client.window(0, 2), modifiers(filter), listener(collected));
+        return collected.get(0);
+    }
+
+    private static List<String> ids(InternalSearchHits hits) {
+        List<String> ids = new ArrayList<>();
+        for (InternalSearchHit hit : hits.internalHits()) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    private static List<SearchResultModifier> modifiers(SearchResultModifier filter) {
+        return Collections.<SearchResultModifier>singletonList(new PrivilegedSearchResultModifier(filter));
+    }
+
+    private static ActionListener<InternalSearchHits> listener(final List<InternalSearchHits> collected) {
+        return new ActionListener<InternalSearchHits>() {
+            @Override
+            public void onResponse(InternalSearchHits hits) {
+                collected.add(hits);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                throw new AssertionError(e);
+            }
+        };
+    }
+
+    private static Map<String, Object> getDefaultMap() {
+        Map<String, Object> clause = new HashMap<>();
+        clause.put("query", "MATCH (n:Blocked) RETURN n.id AS id");
+        clause.put("exclude", true);
+        clause.put("maxResultSize", 2);
+        Map<String, Object> source = new HashMap<>();
+        source.put("query", Collections.singletonMap("match", Collections.singletonMap("title", "graph")));
+        source.put("size", 3);
+        source.put("gas-filter", new HashMap<>(clause));
+        return source;
+    }
+
+    private static class WindowClient extends AbstractClient {
+
+        private int searches;
+
+        WindowClient() {
+            super(Settings.EMPTY, null, Headers.EMPTY);
+        }
+
+        SearchResponse window(int from, int size) {
+            List<InternalSearchHit> hits = new ArrayList<>();
+            for (int i = from; i < Math.min(HITS, from + size); i++) {
+                hits.add(hit(String.valueOf(i + 1), HITS - i));
+            }
+            InternalSearchHits searchHits = new InternalSearchHits(hits.toArray(new InternalSearchHit[hits.size()]), HITS, HITS);
+            return new SearchResponse(new InternalSearchResponse(searchHits, null, null, null, false, null), null, 1, 1, 1, ShardSearchFailure.EMPTY_ARRAY);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+            searches++;
+            Map<String, Object> source = XContentHelper.convertToMap(((SearchRequest) request).source(), false).v2();
+            listener.onResponse((Response) window((Integer) source.get("from"), (Integer) source.get("size")));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ExcludingFilter extends SearchResultCypherFilter {
+
+        private final Set<String> ids;
+        private final List<Integer> windows = new ArrayList<>();
+
+        ExcludingFilter(Set<String> ids) {
+            super(Settings.EMPTY, TestIndexInfo.newInstance());
+            this.ids = ids;
+        }
+
+        @Override
+        public InternalSearchHits modify(InternalSearchHits hits) {
+            windows.add(hits.internalHits().length);
+            return super.modify(hits);
+        }
+
+        @Override
+        protected Set<String> getFilteredItems() {
+            return ids;
+        }
+    }
+}
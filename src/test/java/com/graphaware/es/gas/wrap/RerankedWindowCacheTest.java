@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import com.graphaware.es.gas.modifier.SearchResultModifier;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
+import static org.junit.Assert.*;
+
+public class RerankedWindowCacheTest {
+
+    private static final String[] INDICES = {"movies"};
+
+    private final RerankedWindowCache cache = new RerankedWindowCache(Settings.builder().put(RerankedWindowCache.CACHE_EXPIRE, "30s").build());
+
+    @Test
+    public void testCacheIsDisabledByDefault() {
+        assertFalse(new RerankedWindowCache(Settings.EMPTY).isEnabled());
+        assertTrue(cache.isEnabled());
+    }
+
+    @Test
+    public void testKeyIgnoresThePageAndElementOrder() {
+        Map<String, Object> first = getDefaultMap();
+        first.put("from", 0);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("size", 20);
+        second.put("from", 40);
+        second.put("gas-booster", first.get("gas-booster"));
+        second.put("query", first.get("query"));
+
+        assertEquals(key(first), key(second));
+
+        second.put("query", Collections.singletonMap("match", Collections.singletonMap("title", "graph")));
+        assertNotEquals(key(first), key(second));
+    }
+
+    @Test
+    public void testKeyDependsOnTheCaller() {
+        String key = key(getDefaultMap());
+
+        SearchRequest authorized = new SearchRequest(INDICES);
+        authorized.putHeader("Authorization", "Basic dXNlcjpwYXNz");
+        assertNotEquals(key, cache.key(authorized, INDICES, MetaData.builder().build(), getDefaultMap()));
+
+        SearchRequest withUser = new SearchRequest(INDICES);
+        withUser.putInContext("_shield_user", "user-1");
+        assertNotEquals(key, cache.key(withUser, INDICES, MetaData.builder().build(), getDefaultMap()));
+
+        SearchRequest withOpaqueUser = new SearchRequest(INDICES);
+        withOpaqueUser.putInContext("_shield_user", new Object());
+        assertNull(cache.key(withOpaqueUser, INDICES, MetaData.builder().build(), getDefaultMap()));
+    }
+
+    @Test
+    public void testAggregationsAreNotCacheable() {
+        Map<String, Object> source = getDefaultMap();
+        assertTrue(RerankedWindowCache.isCacheable(source));
+
+        source.put("aggs", new HashMap<>());
+        assertFalse(RerankedWindowCache.isCacheable(source));
+    }
+
+    @Test
+    public void testWholeWindowIsStoredAndPageIsReturned() {
+        String key = key(getDefaultMap());
+        SearchResultModifier modifier = cache.store(new IdentityModifier(), key, 2, 1);
+
+        InternalSearchHits page = modifier.modify(new InternalSearchHits(new InternalSearchHit[]{hit("a", 4), hit("b", 3), hit("c", 2), hit("d", 1)}, 4, 4));
+
+        assertEquals(2, page.internalHits().length);
+        assertEquals("b", page.internalHits()[0].id());
+        assertEquals("c", page.internalHits()[1].id());
+        RerankedWindowCache.RerankedWindow window = cache.get(key);
+        assertNotNull(window);
+        assertTrue(window.hasPage(3));
+        assertFalse(window.hasPage(4));
+    }
+
+    @Test
+    public void testNextPageIsFetchedByIdsAndReordered() {
+        String key = key(getDefaultMap());
+        cache.store(new IdentityModifier(), key, 2, 0).modify(new InternalSearchHits(new InternalSearchHit[]{hit("a", 4), hit("b", 3), hit("c", 2), hit("d", 1)}, 10, 4));
+        RerankedWindowCache.RerankedWindow window = cache.get(key);
+
+        Map<String, Object> pageSource = window.pageSource(getDefaultMap(), 2, 2, INDICES);
+        assertFalse(pageSource.containsKey("gas-booster"));
+        assertEquals(2, pageSource.get("size"));
+        assertEquals(0, pageSource.get("from"));
+        Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) pageSource.get("query")).get("bool");
+        List<String> ids = (List<String>) ((Map<String, Object>) ((Map<String, Object>) bool.get("filter")).get("ids")).get("values");
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("c"));
+        assertTrue(ids.contains("d"));
+
+        InternalSearchHits page = window.page(2, 2).modify(new InternalSearchHits(new InternalSearchHit[]{hit("d", 0.1f), hit("c", 0.7f)}, 2, 0.7f));
+        assertEquals("c", page.internalHits()[0].id());
+        assertEquals(2, page.internalHits()[0].score(), 0);
+        assertEquals("d", page.internalHits()[1].id());
+        assertEquals(1, page.internalHits()[1].score(), 0);
+        assertEquals(10, page.totalHits());
+    }
+
+    @Test
+    public void testPageIsSizedFromTheIndicesOfItsDocuments() {
+        String[] indices = {"movies", "series", "shorts"};
+        InternalSearchHit[] hits = {hit("a", 4), hit("b", 3), hit("c", 2), hit("d", 1)};
+        for (int i = 0; i < hits.length; i++) {
+            hits[i].shard(new SearchShardTarget("node", i < 3 ? "movies" : "series", 0));
+        }
+        String key = cache.key(new SearchRequest("m*", "series", "shorts"), indices, MetaData.builder().build(), getDefaultMap());
+        cache.store(new IdentityModifier(), key, 2, 0).modify(new InternalSearchHits(hits, 10, 4));
+        RerankedWindowCache.RerankedWindow window = cache.get(key);
+
+        Map<String, Object> first = window.pageSource(getDefaultMap(), 0, 2, indices);
+        assertEquals(2, first.get("size"));
+        List<Map<String, Object>> filters = (List<Map<String, Object>>) ((Map<String, Object>) ((Map<String, Object>) first.get("query")).get("bool")).get("filter");
+        assertEquals(Collections.singletonMap("_index", Collections.singletonList("movies")), filters.get(1).get("terms"));
+
+        assertEquals(4, window.pageSource(getDefaultMap(), 2, 2, indices).get("size"));
+    }
+
+    private String key(Map<String, Object> source) {
+        return cache.key(new SearchRequest(INDICES), INDICES, MetaData.builder().build(), source);
+    }
+
+    private static Map<String, Object> getDefaultMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("query", Collections.singletonMap("match_all", Collections.emptyMap()));
+        map.put("size", 10);
+        map.put("gas-booster", Collections.singletonMap("name", "SearchResultCypherBooster"));
+        return map;
+    }
+
+    private static class IdentityModifier implements SearchResultModifier {
+
+        @Override
+        public InternalSearchHits modify(InternalSearchHits hits) {
+            return hits;
+        }
+
+        @Override
+        public void parseRequest(Map<String, Object> sourceAsMap) {
+        }
+    }
+}
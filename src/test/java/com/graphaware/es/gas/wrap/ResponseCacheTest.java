@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    private static final String[] INDICES = {"movies"};
+    private static final String BODY = "{\"query\":{\"match_all\":{}},\"gas-booster\":{\"name\":\"SearchResultCypherBooster\"}}";
+
+    private final ResponseCache cache = new ResponseCache(Settings.builder().put(ResponseCache.CACHE_EXPIRE, "1m").build());
+
+    @Test
+    public void testCacheIsDisabledByDefault() {
+        assertFalse(new ResponseCache(Settings.EMPTY).isEnabled());
+    }
+
+    @Test
+    public void testKeyDependsOnBodyAndIndexVersion() {
+        MetaData metaData = metaData(1);
+        String key = cache.key(request(BODY), INDICES, metaData);
+
+        assertEquals(key, cache.key(request(BODY), INDICES, metaData(1)));
+        assertNotEquals(key, cache.key(request(BODY.replace("match_all", "match_none")), INDICES, metaData));
+        assertNotEquals(key, cache.key(request(BODY), INDICES, metaData(2)));
+        assertNotEquals(key, cache.key(request(BODY).routing("user-1"), INDICES, metaData));
+    }
+
+    @Test
+    public void testKeyDependsOnHeadersAndContext() {
+        MetaData metaData = metaData(1);
+        String key = cache.key(request(BODY), INDICES, metaData);
+
+        SearchRequest authorized = request(BODY);
+        authorized.putHeader("Authorization", "Basic dXNlcjpwYXNz");
+        assertNotEquals(key, cache.key(authorized, INDICES, metaData));
+
+        SearchRequest withUser = request(BODY);
+        withUser.putInContext("_shield_user", "user-1");
+        assertNotEquals(key, cache.key(withUser, INDICES, metaData));
+    }
+
+    @Test
+    public void testSearchWithOpaqueContextHasNoKey() {
+        SearchRequest withUser = request(BODY);
+        withUser.putInContext("_shield_user", new Object());
+        assertNull(cache.key(withUser, INDICES, metaData(1)));
+
+        SearchRequest withHeader = request(BODY);
+        withHeader.putHeader("_shield_user", new Object());
+        assertNull(cache.key(withHeader, INDICES, metaData(1)));
+    }
+
+    @Test
+    public void testStoredResponseIsReturnedAsCopy() {
+        String key = cache.key(request(BODY), INDICES, metaData(1));
+        final SearchResponse[] received = new SearchResponse[1];
+        cache.store(key, listener(received)).onResponse(response());
+
+        assertNotNull(received[0]);
+        SearchResponse cached = cache.get(key);
+        assertNotNull(cached);
+        assertNotSame(received[0], cached);
+        assertEquals(1, cached.getHits().getHits().length);
+        assertEquals("42", cached.getHits().getAt(0).getId());
+        assertEquals(3.5f, cached.getHits().getAt(0).getScore(), 0);
+    }
+
+    @Test
+    public void testResponsesWithShardFailuresAreNotStored() {
+        String key = cache.key(request(BODY), INDICES, metaData(1));
+        SearchResponse failed = new SearchResponse(InternalSearchResponse.empty(), null, 2, 1, 5, new ShardSearchFailure[]{new ShardSearchFailure(new RuntimeException("boom"))});
+        cache.store(key, listener(new SearchResponse[1])).onResponse(failed);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testCacheIsBoundedByBytes() {
+        ResponseCache small = new ResponseCache(Settings.builder().put(ResponseCache.CACHE_EXPIRE, "1m").put(ResponseCache.CACHE_MAX_BYTES, "1b").build());
+        String key = small.key(request(BODY), INDICES, metaData(1));
+        small.put(key, response());
+
+        assertNull(small.get(key));
+    }
+
+    @Test
+    public void testStatsAreReported() throws IOException {
+        String key = cache.key(request(BODY), INDICES, metaData(1));
+        cache.get(key);
+        cache.put(key, response());
+        cache.get(key);
+
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+        cache.toXContent(builder, ToXContent.EMPTY_PARAMS).endObject();
+        Map<String, Object> stats = XContentHelper.convertToMap(builder.bytes(), false).v2();
+
+        assertEquals(true, stats.get("enabled"));
+        assertEquals(1, ((Number) stats.get("entries")).intValue());
+        assertEquals(1, ((Number) stats.get("hits")).intValue());
+        assertEquals(1, ((Number) stats.get("misses")).intValue());
+        assertTrue(((Number) stats.get("size_in_bytes")).longValue() > 0);
+    }
+
+    private static SearchRequest request(String body) {
+        return new SearchRequest(INDICES).source(new BytesArray(body));
+    }
+
+    private static MetaData metaData(long version) {
+        IndexMetaData index = IndexMetaData.builder("movies")
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                .numberOfShards(1)
+                .numberOfReplicas(0)
+                .version(version)
+                .build();
+        return MetaData.builder().put(index, false).build();
+    }
+
+    private static SearchResponse response() {
+        InternalSearchHits hits = new InternalSearchHits(new InternalSearchHit[]{hit("42", 3.5f)}, 1, 3.5f);
+        return new SearchResponse(new InternalSearchResponse(hits, null, null, null, false, null), null, 1, 1, 5, ShardSearchFailure.EMPTY_ARRAY);
+    }
+
+    private static ActionListener<SearchResponse> listener(final SearchResponse[] received) {
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                received[0] = response;
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                fail(e.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.es.gas.wrap;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.lookup.SourceLookup;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.graphaware.es.gas.domain.ClauseConstants.*;
+import static com.graphaware.es.gas.wrap.GraphAidedSearchActionListenerWrapper.GAS_BOOSTER_CLAUSE;
+import static org.junit.Assert.*;
+
+public class SplicedSearchSourceTest {
+
+    private static final String SOURCE = "{\n" +
+            "  \"query\" : { \"bool\" : { \"must\" : [ { \"match\" : { \"title\" : \"matrix, reloaded\" } } ] } },\n" +
+            "  \"size\" : 5,\n" +
+            "  \"gas-booster\" : { \"name\" : \"SearchResultCypherBooster\", \"query\" : \"MATCH (n) RETURN n\" },\n" +
+            "  \"aggs\" : { \"genres\" : { \"terms\" : { \"field\" : \"genre\" } } }\n" +
+            "}";
+
+    @Test
+    public void testOnlyGraphAidedElementsAreDecoded() throws IOException {
+        SplicedSearchSource source = SplicedSearchSource.parse(new BytesArray(SOURCE));
+
+        Map<String, Object> decoded = source.getSource();
+        assertEquals(2, decoded.size());
+        assertEquals(5, decoded.get(SIZE));
+        assertEquals("SearchResultCypherBooster", ((Map<?, ?>) decoded.get(GAS_BOOSTER_CLAUSE)).get(NAME));
+    }
+
+    @Test
+    public void testSkippedElementsAreKnown() throws IOException {
+        SplicedSearchSource source = SplicedSearchSource.parse(new BytesArray(SOURCE));
+
+        assertTrue(source.has("aggs"));
+        assertTrue(source.has(SIZE));
+        assertFalse(source.has(RESCORE));
+        assertFalse(RerankedWindowCache.isCacheable(source));
+    }
+
+    @Test
+    public void testChangesAreSplicedIntoOriginalSource() throws IOException {
+        SplicedSearchSource source = SplicedSearchSource.parse(new BytesArray(SOURCE));
+        source.getSource().remove(GAS_BOOSTER_CLAUSE);
+        source.getSource().put(SIZE, 1000);
+        source.getSource().put(FROM, 0);
+
+        String rebuilt = source.build().toUtf8();
+        Map<String, Object> expected = SourceLookup.sourceAsMap(new BytesArray(SOURCE));
+        expected.remove(GAS_BOOSTER_CLAUSE);
+        expected.put(SIZE, 1000);
+        expected.put(FROM, 0);
+
+        assertEquals(expected, SourceLookup.sourceAsMap(new BytesArray(rebuilt)));
+        assertTrue(rebuilt.contains("{ \"match\" : { \"title\" : \"matrix, reloaded\" } }"));
+    }
+
+    @Test
+    public void testSourceWithOnlyGraphAidedElements() throws IOException {
+        SplicedSearchSource source = SplicedSearchSource.parse(new BytesArray("{\"gas-booster\":{\"name\":\"b\"}}"));
+        source.getSource().remove(GAS_BOOSTER_CLAUSE);
+        assertEquals("{}", source.build().toUtf8());
+
+        source.getSource().put(SIZE, 10);
+        assertEquals("{\"size\":10}", source.build().toUtf8());
+    }
+
+    @Test
+    public void testNonJsonSourceIsNotSpliced() throws IOException {
+        byte[] smile = XContentFactory.smileBuilder().startObject().field(SIZE, 10).endObject().bytes().toBytes();
+        assertNull(SplicedSearchSource.parse(new BytesArray(smile)));
+        assertNotNull(XContentHelper.convertToMap(new BytesArray(smile), false).v2());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.es.gas.wrap;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.es.gas.stubs.TestSearchHits.hit;
+import static org.junit.Assert.*;
+
+public class TwoPhaseFetchTest {
+
+    @Test
+    public void testFetchElementsAreRemovedFromFirstRound() {
+        Map<String, Object> source = getDefaultMap();
+        source.put("_source", Collections.singletonList("title"));
+        source.put("highlight", new HashMap<>());
+
+        TwoPhaseFetch.prepare(null, new SearchRequest("index"), source);
+
+        assertEquals(false, source.get("_source"));
+        assertEquals(Collections.emptyList(), source.get("fields"));
+        assertFalse(source.containsKey("highlight"));
+        assertTrue(source.containsKey("query"));
+    }
+
+    @Test
+    public void testRemovedFetchElementsAreReturned() {
+        Map<String, Object> source = getDefaultMap();
+        source.put("script_fields", new HashMap<>());
+
+        Map<String, Object> removed = TwoPhaseFetch.removeFetchElements(source);
+
+        assertTrue(removed.containsKey("script_fields"));
+        assertFalse(source.containsKey("script_fields"));
+        assertEquals(false, source.get("_source"));
+    }
+
+    @Test
+    public void testSecondRoundOnlyLoadsFinalHits() {
+        Map<String, Object> source = getDefaultMap();
+        source.put("_source", Collections.singletonList("title"));
+
+        TwoPhaseFetch fetch = TwoPhaseFetch.prepare(null, new SearchRequest("index"), source);
+        Map<String, Object> fetchSource = fetch.buildFetchSource(new InternalSearchHit[]{hit("2"), hit("5")});
+
+        assertEquals(Collections.singletonList("title"), fetchSource.get("_source"));
+        assertEquals(2, fetchSource.get("size"));
+        assertEquals(0, fetchSource.get("from"));
+
+        Map<String, Object> bool = (Map<String, Object>) ((Map<String, Object>) fetchSource.get("query")).get("bool");
+        assertEquals(getDefaultMap().get("query"), bool.get("must"));
+        List<String> ids = (List<String>) ((Map<String, Object>) ((Map<String, Object>) bool.get("filter")).get("ids")).get("values");
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("2"));
+        assertTrue(ids.contains("5"));
+    }
+
+    @Test
+    public void testSourceIsCopiedToFinalHits() {
+        InternalSearchHit hit = hit("1");
+        InternalSearchHit fetched = hit("1");
+        fetched.sourceRef(new BytesArray("{\"title\":\"one\"}"));
+
+        TwoPhaseFetch.merge(new InternalSearchHit[]{hit}, new SearchHit[]{fetched});
+
+        assertEquals("{\"title\":\"one\"}", hit.sourceAsString());
+    }
+
+    private HashMap<String, Object> getDefaultMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("query", Collections.singletonMap("match_all", Collections.emptyMap()));
+
+        return map;
+    }
+}